@@ -44,7 +44,7 @@ public class Interval implements Intervalable, Serializable {
 
     @Override
     public int hashCode() {
-        return this.start % 100 + this.end % 100;
+        return 31 * this.start + this.end;
     }
 
     @Override
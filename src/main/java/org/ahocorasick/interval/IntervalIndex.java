@@ -0,0 +1,140 @@
+package org.ahocorasick.interval;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * An immutable index of intervals, held in flat arrays sorted on start. Every
+ * interval in the sorted array is the root of the implicit binary tree over
+ * the range it halves, and carries the maximum end within that range. A query
+ * descends the tree and skips every range whose maximum end lies before the
+ * query, or whose starts lie after it.
+ * </p>
+ *
+ * <p>
+ * Queries write the indexes of the overlapping intervals, as passed in at
+ * construction, into an array supplied by the caller, ordered on start. They
+ * do not allocate, which keeps large numbers of queries cheap.
+ * </p>
+ */
+public class IntervalIndex {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] indexes;
+    private final int[] maximumEnds;
+
+    public IntervalIndex(List<? extends Intervalable> intervals) {
+        this(startsOf(intervals), endsOf(intervals), intervals.size());
+    }
+
+    /**
+     * @param starts the start of every interval
+     * @param ends the end of every interval
+     * @param count the number of intervals in the arrays
+     */
+    public IntervalIndex(int[] starts, int[] ends, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) starts[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        this.starts = new int[count];
+        this.ends = new int[count];
+        this.indexes = new int[count];
+        this.maximumEnds = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            this.starts[i] = starts[index];
+            this.ends[i] = ends[index];
+            this.indexes[i] = index;
+        }
+        computeMaximumEnds(0, count);
+    }
+
+    public int size() {
+        return this.starts.length;
+    }
+
+    /**
+     * Finds the intervals that contain the point.
+     *
+     * @see #findOverlaps(int, int, int[])
+     */
+    public int findOverlaps(int point, int[] result) {
+        return findOverlaps(point, point, result);
+    }
+
+    /**
+     * Finds the intervals that overlap the range from start to end,
+     * inclusive.
+     *
+     * @param result receives the indexes of the overlapping intervals, ordered
+     *            on start. If it is too small, only the first overlaps are
+     *            written.
+     * @return the number of overlapping intervals, which may be larger than
+     *         the result array
+     */
+    public int findOverlaps(int start, int end, int[] result) {
+        return find(0, this.starts.length, start, end, result, 0);
+    }
+
+    public int countOverlaps(int start, int end) {
+        return find(0, this.starts.length, start, end, null, 0);
+    }
+
+    private int find(int low, int high, int start, int end, int[] result,
+            int found) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.maximumEnds[middle] < start) {
+                return found;
+            }
+            found = find(low, middle, start, end, result, found);
+            if (this.starts[middle] > end) {
+                return found;
+            }
+            if (this.ends[middle] >= start) {
+                if (result != null && found < result.length) {
+                    result[found] = this.indexes[middle];
+                }
+                found++;
+            }
+            low = middle + 1;
+        }
+        return found;
+    }
+
+    private int computeMaximumEnds(int low, int high) {
+        if (low >= high) {
+            return Integer.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        int maximum = Math.max(this.ends[middle],
+                Math.max(computeMaximumEnds(low, middle),
+                        computeMaximumEnds(middle + 1, high)));
+        this.maximumEnds[middle] = maximum;
+        return maximum;
+    }
+
+    private static int[] startsOf(List<? extends Intervalable> intervals) {
+        int[] starts = new int[intervals.size()];
+        int i = 0;
+        for (Intervalable interval : intervals) {
+            starts[i++] = interval.getStart();
+        }
+        return starts;
+    }
+
+    private static int[] endsOf(List<? extends Intervalable> intervals) {
+        int[] ends = new int[intervals.size()];
+        int i = 0;
+        for (Intervalable interval : intervals) {
+            ends[i++] = interval.getEnd();
+        }
+        return ends;
+    }
+
+}
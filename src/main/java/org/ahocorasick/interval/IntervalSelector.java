@@ -0,0 +1,220 @@
+package org.ahocorasick.interval;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Removes overlapping intervals held in parallel arrays of starts and ends.
+ * The conflict resolution rules are those of
+ * {@link IntervalTree#removeOverlaps(java.util.List)}: longer intervals
+ * prevail over shorter ones, left-most intervals over right-most ones.
+ * Intervals with the same start and end do not count as overlapping each
+ * other, so they are either all kept or all removed.
+ * </p>
+ *
+ * <p>
+ * The intervals are visited from most to least important, keeping every
+ * interval that does not overlap one kept before it. Kept intervals never
+ * overlap, so a Fenwick tree over the ranks of their starts answers whether
+ * an interval overlaps any of them in O(log n), which makes the whole
+ * selection O(n log n). The scratch arrays are kept between calls, so a
+ * selector that is reused does not allocate once it has grown to size.
+ * </p>
+ */
+public class IntervalSelector {
+
+    private int[] byStart = new int[0];
+    private int[] bySize = new int[0];
+    private int[] mergeBuffer = new int[0];
+
+    /** rank of the start of each interval among the distinct starts */
+    private int[] ranks = new int[0];
+    private int[] distinctStarts = new int[0];
+    private int distinctCount;
+
+    /** Fenwick tree counting the kept intervals per start rank */
+    private int[] keptTree = new int[1];
+    /** end of the kept interval per start rank, if keptAtRank is set */
+    private int[] keptEnds = new int[0];
+    private boolean[] keptAtRank = new boolean[0];
+    private boolean[] kept = new boolean[0];
+
+    /**
+     * @param starts the start of every interval
+     * @param ends the end of every interval
+     * @param count the number of intervals in the arrays
+     * @param selected receives the indexes of the intervals that survive,
+     *            ordered on start and then on index; must be able to hold
+     *            count elements
+     * @return the number of intervals that survive
+     */
+    public int removeOverlaps(int[] starts, int[] ends, int count,
+            int[] selected) {
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            this.byStart[i] = i;
+            this.bySize[i] = i;
+        }
+        sort(this.byStart, count, starts, ends, false);
+        sort(this.bySize, count, starts, ends, true);
+        rankStarts(starts, count);
+
+        Arrays.fill(this.keptTree, 0, this.distinctCount + 1, 0);
+        Arrays.fill(this.keptAtRank, 0, this.distinctCount, false);
+        Arrays.fill(this.kept, 0, count, false);
+
+        for (int i = 0; i < count; i++) {
+            int index = this.bySize[i];
+            int rank = this.ranks[index];
+            if (this.keptAtRank[rank]) {
+                // Only an interval equal to the kept one may share its start
+                this.kept[index] = this.keptEnds[rank] == ends[index];
+                continue;
+            }
+            if (!overlapsKept(starts[index], ends[index], rank)) {
+                this.kept[index] = true;
+                this.keptAtRank[rank] = true;
+                this.keptEnds[rank] = ends[index];
+                for (int node = rank + 1; node <= this.distinctCount; node += node
+                        & -node) {
+                    this.keptTree[node]++;
+                }
+            }
+        }
+
+        int selectedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int index = this.byStart[i];
+            if (this.kept[index]) {
+                selected[selectedCount++] = index;
+            }
+        }
+        return selectedCount;
+    }
+
+    private boolean overlapsKept(int start, int end, int rank) {
+        // Any kept interval starting within [start, end] overlaps
+        int lastRank = upperBound(end) - 1;
+        int keptBefore = countBelow(rank);
+        if (countBelow(lastRank + 1) > keptBefore) {
+            return true;
+        }
+        // Otherwise only the last kept interval starting before it can
+        if (keptBefore == 0) {
+            return false;
+        }
+        return this.keptEnds[findKept(keptBefore)] >= start;
+    }
+
+    /** number of kept intervals with a start rank below the given rank */
+    private int countBelow(int rank) {
+        int count = 0;
+        for (int node = rank; node > 0; node -= node & -node) {
+            count += this.keptTree[node];
+        }
+        return count;
+    }
+
+    /** start rank of the k-th kept interval, counting from 1 */
+    private int findKept(int k) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(this.distinctCount); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= this.distinctCount && this.keptTree[next] < k) {
+                position = next;
+                k -= this.keptTree[next];
+            }
+        }
+        return position;
+    }
+
+    /** number of distinct starts that are less than or equal to the value */
+    private int upperBound(int value) {
+        int low = 0;
+        int high = this.distinctCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.distinctStarts[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void rankStarts(int[] starts, int count) {
+        this.distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            int index = this.byStart[i];
+            if (this.distinctCount == 0
+                    || this.distinctStarts[this.distinctCount - 1] != starts[index]) {
+                this.distinctStarts[this.distinctCount++] = starts[index];
+            }
+            this.ranks[index] = this.distinctCount - 1;
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort of interval indexes, either on start or on
+     * size (largest first) and then start.
+     */
+    private void sort(int[] order, int count, int[] starts, int[] ends,
+            boolean onSize) {
+        int[] source = order;
+        int[] target = this.mergeBuffer;
+        for (int width = 1; width < count; width <<= 1) {
+            for (int low = 0; low < count; low += width << 1) {
+                int middle = Math.min(low + width, count);
+                int high = Math.min(low + (width << 1), count);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (left < middle
+                            && (right >= high || compare(source[left],
+                                    source[right], starts, ends, onSize) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != order) {
+            System.arraycopy(source, 0, order, 0, count);
+        }
+    }
+
+    private int compare(int one, int other, int[] starts, int[] ends,
+            boolean onSize) {
+        if (onSize) {
+            long oneSize = (long) ends[one] - starts[one];
+            long otherSize = (long) ends[other] - starts[other];
+            if (oneSize != otherSize) {
+                return oneSize > otherSize ? -1 : 1;
+            }
+        }
+        return starts[one] < starts[other] ? -1
+                : starts[one] == starts[other] ? 0 : 1;
+    }
+
+    private void ensureCapacity(int count) {
+        if (this.byStart.length >= count) {
+            return;
+        }
+        this.byStart = new int[count];
+        this.bySize = new int[count];
+        this.mergeBuffer = new int[count];
+        this.ranks = new int[count];
+        this.distinctStarts = new int[count];
+        this.keptTree = new int[count + 1];
+        this.keptEnds = new int[count];
+        this.keptAtRank = new boolean[count];
+        this.kept = new boolean[count];
+    }
+
+}
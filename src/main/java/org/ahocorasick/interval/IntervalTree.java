@@ -1,48 +1,62 @@
 package org.ahocorasick.interval;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 public class IntervalTree {
 
-    private IntervalNode rootNode = null;
+    private final Intervalable[] intervals;
+
+    private final IntervalIndex index;
 
     public IntervalTree(List<Intervalable> intervals) {
-        this.rootNode = new IntervalNode(intervals);
+        this.intervals = intervals.toArray(new Intervalable[intervals.size()]);
+        this.index = new IntervalIndex(intervals);
     }
 
+    /**
+     * Removes all overlapping intervals from the list, retaining the longest
+     * and then left-most ones, and sorts the remainder on position. Runs in
+     * O(n log n).
+     */
     public List<Intervalable> removeOverlaps(List<Intervalable> intervals) {
-
-        // Sort the intervals on size, then left-most position
-        Collections.sort(intervals, new IntervalableComparatorBySize());
-
-        Set<Intervalable> removeIntervals = new TreeSet<Intervalable>();
-
-        for (Intervalable interval : intervals) {
-            // If the interval was already removed, ignore it
-            if (removeIntervals.contains(interval)) {
-                continue;
-            }
-
-            // Remove all overallping intervals
-            removeIntervals.addAll(findOverlaps(interval));
+        int count = intervals.size();
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            Intervalable interval = intervals.get(i);
+            starts[i] = interval.getStart();
+            ends[i] = interval.getEnd();
         }
 
-        // Remove all intervals that were overlapping
-        for (Intervalable removeInterval : removeIntervals) {
-            intervals.remove(removeInterval);
-        }
-
-        // Sort the intervals, now on left-most position only
-        Collections.sort(intervals, new IntervalableComparatorByPosition());
+        int[] selected = new int[count];
+        int selectedCount = new IntervalSelector().removeOverlaps(starts, ends,
+                count, selected);
 
+        List<Intervalable> retained = new ArrayList<Intervalable>(selectedCount);
+        for (int i = 0; i < selectedCount; i++) {
+            retained.add(intervals.get(selected[i]));
+        }
+        intervals.clear();
+        intervals.addAll(retained);
         return intervals;
     }
 
+    /**
+     * @return the intervals in the tree that overlap the given one, except
+     *         those equal to it, ordered on start
+     */
     public List<Intervalable> findOverlaps(Intervalable interval) {
-        return rootNode.findOverlaps(interval);
+        int[] found = new int[this.index.countOverlaps(interval.getStart(),
+                interval.getEnd())];
+        this.index.findOverlaps(interval.getStart(), interval.getEnd(), found);
+        List<Intervalable> overlaps = new ArrayList<Intervalable>(found.length);
+        for (int i : found) {
+            if (!this.intervals[i].equals(interval)) {
+                overlaps.add(this.intervals[i]);
+            }
+        }
+        return overlaps;
     }
 
 }
@@ -0,0 +1,242 @@
+package org.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Remembers the emits of short texts, so texts that are parsed over and over
+ * again (titles, query terms, header values) only have to be scanned once.
+ * </p>
+ *
+ * <p>
+ * The cache is split into segments, each guarded by its own lock and evicting
+ * its least recently used entries when it exceeds its share of the maximum
+ * size or weight. The weight of an entry is the length of its text plus the
+ * number of its emits. Texts longer than the maximum text length are parsed
+ * without being cached. Cached results are unmodifiable and shared between
+ * callers.
+ * </p>
+ *
+ * <p>
+ * Every cached result remembers the version of the trie it was parsed with,
+ * so results become misses once keywords are added to the trie or its options
+ * are changed. Matches served from the cache are counted by the hit counter of
+ * the trie, if it has one, like the matches of a parse.
+ * </p>
+ */
+public class CachingTrie<T> {
+
+    private static final int MAXIMUM_SEGMENT_COUNT = 16;
+
+    private static final int DEFAULT_MAXIMUM_TEXT_LENGTH = 256;
+
+    private final Trie<T> trie;
+
+    private final int maximumTextLength;
+
+    private final Segment<T>[] segments;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CachingTrie(Trie<T> trie, int maximumSize) {
+        this(trie, maximumSize, Long.MAX_VALUE, DEFAULT_MAXIMUM_TEXT_LENGTH);
+    }
+
+    /**
+     * @param trie the trie to parse texts with on a cache miss
+     * @param maximumSize the maximum number of cached texts
+     * @param maximumWeight the maximum total weight of the cached texts
+     * @param maximumTextLength the length above which texts are not cached
+     */
+    public CachingTrie(Trie<T> trie, int maximumSize, long maximumWeight,
+            int maximumTextLength) {
+        if (maximumSize <= 0 || maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum size and weight must be positive");
+        }
+        this.trie = trie;
+        this.maximumTextLength = maximumTextLength;
+        // Use fewer segments than the maximum for a small cache, so that
+        // every segment holds at least one entry, and share out the rest of
+        // the division so that the segments add up to the exact maximum
+        int segmentCount = MAXIMUM_SEGMENT_COUNT;
+        while (segmentCount > 1
+                && (segmentCount > maximumSize || segmentCount > maximumWeight)) {
+            segmentCount >>= 1;
+        }
+        @SuppressWarnings("unchecked")
+        Segment<T>[] segments = (Segment<T>[]) new Segment<?>[segmentCount];
+        this.segments = segments;
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<T>(maximumSize / segmentCount
+                    + (i < maximumSize % segmentCount ? 1 : 0), maximumWeight
+                    / segmentCount + (i < maximumWeight % segmentCount ? 1 : 0));
+        }
+    }
+
+    public Collection<Emit<T>> parseText(String text) {
+        if (text.length() > this.maximumTextLength) {
+            return this.trie.parseText(text);
+        }
+        Segment<T> segment = segmentFor(text);
+        int version = this.trie.getVersion();
+        List<Emit<T>> emits = segment.get(text, version);
+        if (emits != null) {
+            this.hitCount.incrementAndGet();
+            KeywordHitCounter counter = this.trie.getHitCounter();
+            if (counter != null) {
+                for (Emit<T> emit : emits) {
+                    counter.increment(emit.getKeywordId());
+                }
+            }
+            return emits;
+        }
+        this.missCount.incrementAndGet();
+        // Parse outside of the lock; racing threads may both parse the same
+        // text, which is cheaper than making all others wait
+        ParseResult<Emit<T>> result = this.trie.parseResult(text);
+        if (result.isTruncated()) {
+            // Whether a parse stops early may depend on timing, so only
+            // complete results are cached
+            return result;
+        }
+        emits = Collections.unmodifiableList(new ArrayList<Emit<T>>(result));
+        this.evictionCount.addAndGet(segment.put(text, version, emits));
+        return emits;
+    }
+
+    public Trie<T> getTrie() {
+        return this.trie;
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * @return the ratio of cache hits to cacheable requests, or 0.0 if no
+     *         cacheable text has been parsed yet
+     */
+    public double getHitRate() {
+        long hits = this.hitCount.get();
+        long requests = hits + this.missCount.get();
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment<T> segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment<T> segmentFor(String text) {
+        int hash = text.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return this.segments[hash & (this.segments.length - 1)];
+    }
+
+    private static class Entry<T> {
+
+        final int version;
+
+        final List<Emit<T>> emits;
+
+        Entry(int version, List<Emit<T>> emits) {
+            this.version = version;
+            this.emits = emits;
+        }
+
+    }
+
+    private static class Segment<T> {
+
+        private final int maximumSize;
+
+        private final long maximumWeight;
+
+        private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<String, Entry<T>>(
+                16, 0.75f, true);
+
+        private long weight = 0;
+
+        Segment(int maximumSize, long maximumWeight) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+        }
+
+        /**
+         * @return the cached emits of the text, or null if they are not
+         *         cached or were parsed with another version of the trie
+         */
+        synchronized List<Emit<T>> get(String text, int version) {
+            Entry<T> entry = this.entries.get(text);
+            return entry == null || entry.version != version ? null
+                    : entry.emits;
+        }
+
+        /**
+         * @return the number of entries evicted to make room
+         */
+        synchronized int put(String text, int version, List<Emit<T>> emits) {
+            Entry<T> previous = this.entries.put(text, new Entry<T>(version,
+                    emits));
+            if (previous != null) {
+                this.weight -= weigh(text, previous.emits);
+            }
+            this.weight += weigh(text, emits);
+
+            int evicted = 0;
+            Iterator<Map.Entry<String, Entry<T>>> it = this.entries.entrySet()
+                    .iterator();
+            while ((this.entries.size() > this.maximumSize || this.weight > this.maximumWeight)
+                    && it.hasNext()) {
+                Map.Entry<String, Entry<T>> eldest = it.next();
+                this.weight -= weigh(eldest.getKey(), eldest.getValue().emits);
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized int size() {
+            return this.entries.size();
+        }
+
+        synchronized void clear() {
+            this.entries.clear();
+            this.weight = 0;
+        }
+
+        private long weigh(String text, List<Emit<T>> emits) {
+            return text.length() + emits.size();
+        }
+    }
+
+}
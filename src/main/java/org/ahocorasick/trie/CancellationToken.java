@@ -0,0 +1,41 @@
+package org.ahocorasick.trie;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets another thread stop a running parse, or stops it by itself once its
+ * deadline has passed. The parse checks the token periodically and returns
+ * the matches found so far, flagged as truncated.
+ */
+public class CancellationToken {
+
+    private final long deadline;
+
+    private final boolean hasDeadline;
+
+    private volatile boolean cancelled = false;
+
+    public CancellationToken() {
+        this.deadline = 0;
+        this.hasDeadline = false;
+    }
+
+    /**
+     * Creates a token that cancels itself once the timeout has passed,
+     * counting from now.
+     */
+    public CancellationToken(long timeout, TimeUnit unit) {
+        this.deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.hasDeadline = true;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled
+                || (this.hasDeadline && System.nanoTime() - this.deadline >= 0);
+    }
+
+}
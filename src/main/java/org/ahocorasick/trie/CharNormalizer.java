@@ -0,0 +1,37 @@
+package org.ahocorasick.trie;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * Maps every character of the keywords and of the parsed text to the
+ * character it is matched as, for instance to ignore accents or to fold
+ * full-width forms. The keywords are normalized when they are added, the text
+ * while it is parsed, so no normalized copy of the text is made. The emits
+ * report their positions in the original text.
+ * </p>
+ *
+ * <p>
+ * A normalizer may also drop characters, such as combining marks or the second
+ * of two whitespace characters. It sees the last character it returned, which
+ * is enough to collapse runs of characters. {@link CharNormalizers} holds the
+ * common normalizers.
+ * </p>
+ */
+public interface CharNormalizer extends Serializable {
+
+    /** returned for characters that are dropped from the text */
+    int IGNORE = -1;
+
+    /** passed as the previous character at the start of a text */
+    int NONE = -1;
+
+    /**
+     * @param character the character to normalize
+     * @param previous the previous normalized character that was not dropped,
+     *            or {@link #NONE} at the start of the text
+     * @return the normalized character, or {@link #IGNORE} to drop it
+     */
+    int normalize(char character, int previous);
+
+}
@@ -0,0 +1,165 @@
+package org.ahocorasick.trie;
+
+import java.text.Normalizer;
+
+/**
+ * The common character normalizers.
+ */
+public final class CharNormalizers {
+
+    private static final CharNormalizer ACCENTS = new Accents();
+
+    private static final CharNormalizer FULL_WIDTH = new FullWidth();
+
+    private static final CharNormalizer WHITESPACE = new Whitespace();
+
+    private CharNormalizers() {
+    }
+
+    /**
+     * Removes accents: drops combining diacritical marks and replaces the
+     * accented Latin letters by their base letter, so both the composed and
+     * the decomposed form of "caf&eacute;" match "cafe". The vowel signs and
+     * other non-spacing marks of other scripts are kept.
+     */
+    public static CharNormalizer accents() {
+        return ACCENTS;
+    }
+
+    /**
+     * Replaces the full-width forms of ASCII characters, and the ideographic
+     * space, by the ASCII characters.
+     */
+    public static CharNormalizer fullWidth() {
+        return FULL_WIDTH;
+    }
+
+    /**
+     * Replaces every whitespace character by a space, and drops the ones that
+     * follow another whitespace character.
+     */
+    public static CharNormalizer whitespace() {
+        return WHITESPACE;
+    }
+
+    /**
+     * Applies the normalizers in order. A character that any of them drops is
+     * dropped.
+     */
+    public static CharNormalizer chain(CharNormalizer... normalizers) {
+        return new Chain(normalizers.clone());
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Accents implements CharNormalizer {
+
+        /** the base letters of the Latin letters from FIRST until LAST */
+        private static final int FIRST = 0x00C0;
+        private static final int LAST = 0x024F;
+        private static final int FIRST_EXTENDED = 0x1E00;
+        private static final int LAST_EXTENDED = 0x1EFF;
+        private static final char[] BASE = baseLetters(FIRST, LAST);
+        private static final char[] BASE_EXTENDED = baseLetters(
+                FIRST_EXTENDED, LAST_EXTENDED);
+
+        @Override
+        public int normalize(char character, int previous) {
+            if (character < FIRST) {
+                return character;
+            }
+            if (character <= LAST) {
+                return BASE[character - FIRST];
+            }
+            if (character >= FIRST_EXTENDED && character <= LAST_EXTENDED) {
+                return BASE_EXTENDED[character - FIRST_EXTENDED];
+            }
+            return isCombiningDiacritic(character) ? IGNORE : character;
+        }
+
+        /**
+         * Only the combining diacritical marks blocks: other non-spacing marks,
+         * such as Thai, Devanagari or Hebrew vowel signs, are not accents.
+         */
+        private static boolean isCombiningDiacritic(char character) {
+            return character >= '\u0300' && character <= '\u036F'
+                    || character >= '\u1AB0' && character <= '\u1AFF'
+                    || character >= '\u1DC0' && character <= '\u1DFF'
+                    || character >= '\u20D0' && character <= '\u20FF'
+                    || character >= '\uFE20' && character <= '\uFE2F';
+        }
+
+        private static char[] baseLetters(int first, int last) {
+            char[] base = new char[last - first + 1];
+            for (int character = first; character <= last; character++) {
+                String decomposed = Normalizer.normalize(
+                        String.valueOf((char) character), Normalizer.Form.NFD);
+                base[character - first] = decomposed.charAt(0);
+            }
+            return base;
+        }
+
+        private Object readResolve() {
+            return ACCENTS;
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static final class FullWidth implements CharNormalizer {
+
+        @Override
+        public int normalize(char character, int previous) {
+            if (character >= '\uFF01' && character <= '\uFF5E') {
+                return character - 0xFEE0;
+            }
+            return character == '\u3000' ? ' ' : character;
+        }
+
+        private Object readResolve() {
+            return FULL_WIDTH;
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Whitespace implements CharNormalizer {
+
+        @Override
+        public int normalize(char character, int previous) {
+            if (!Character.isWhitespace(character)
+                    && !Character.isSpaceChar(character)) {
+                return character;
+            }
+            return previous == ' ' ? IGNORE : ' ';
+        }
+
+        private Object readResolve() {
+            return WHITESPACE;
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Chain implements CharNormalizer {
+
+        private final CharNormalizer[] normalizers;
+
+        Chain(CharNormalizer[] normalizers) {
+            this.normalizers = normalizers;
+        }
+
+        @Override
+        public int normalize(char character, int previous) {
+            int normalized = character;
+            for (CharNormalizer normalizer : this.normalizers) {
+                normalized = normalizer.normalize((char) normalized, previous);
+                if (normalized == IGNORE) {
+                    break;
+                }
+            }
+            return normalized;
+        }
+
+    }
+
+}
@@ -0,0 +1,255 @@
+package org.ahocorasick.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.ahocorasick.trie.State.StringPayload;
+
+/**
+ * <p>
+ * The automaton of a trie compiled into flat int tables. Every character that
+ * occurs in a keyword gets its own character class, all other characters share
+ * class 0. The transition table holds the next state for every state and
+ * class, with the failure transitions already resolved, so a scan costs two
+ * array reads per character: no map lookup, no boxing and no failure walk.
+ * </p>
+ *
+ * <p>
+ * The table grows with the number of states times the number of distinct
+ * characters, so only small dictionaries are compiled; see
+ * {@link Trie#compile(int)}. States are numbered breadth first, which keeps
+ * the shallow states, where a scan spends most of its time, together; a
+ * relayout can order them on the visits recorded from sample texts instead.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class CompiledAutomaton implements Serializable {
+
+    private static final char[] EMPTY_PAGE = new char[256];
+
+    /** the character class of every character, in pages of 256 */
+    final char[][] classPages;
+
+    /** the number of character classes, which is the width of a table row */
+    final int width;
+
+    final int stateCount;
+
+    /** the next state for every state and character class */
+    final int[] transitions;
+
+    /**
+     * for every state, the first state with outputs of its own that it emits
+     * for: the state itself if it has any, otherwise its output link
+     */
+    final int[] firstOutputStates;
+
+    /** the next state on the output chain of every state, or -1 */
+    final int[] outputLinks;
+
+    /**
+     * the keyword ids of the outputs of state i are held in outputs, from
+     * outputStarts[i] until outputStarts[i + 1]
+     */
+    final int[] outputStarts;
+
+    final int[] outputs;
+
+    /** the length and dictionary of every keyword, by keyword id */
+    final int[] keywordLengths;
+
+    final int[] keywordDictionaries;
+
+    private CompiledAutomaton(char[][] classPages, int width, int stateCount,
+            int[] transitions, int[] firstOutputStates, int[] outputLinks,
+            int[] outputStarts, int[] outputs, int[] keywordLengths,
+            int[] keywordDictionaries) {
+        this.classPages = classPages;
+        this.width = width;
+        this.stateCount = stateCount;
+        this.transitions = transitions;
+        this.firstOutputStates = firstOutputStates;
+        this.outputLinks = outputLinks;
+        this.outputStarts = outputStarts;
+        this.outputs = outputs;
+        this.keywordLengths = keywordLengths;
+        this.keywordDictionaries = keywordDictionaries;
+    }
+
+    int classOf(char character) {
+        return this.classPages[character >>> 8][character & 0xff];
+    }
+
+    /**
+     * Compiles the automaton below the root state, whose failure states must
+     * have been constructed.
+     *
+     * @return the compiled automaton, or null if its transition table would
+     *         hold more than the maximum number of cells
+     */
+    static <T> CompiledAutomaton compile(State<T> rootState,
+            List<StringPayload<T>> keywords, int maximumTableSize) {
+        List<State<T>> states = new ArrayList<State<T>>();
+        Map<State<T>, Integer> ids = new IdentityHashMap<State<T>, Integer>();
+        TreeSet<Character> alphabet = new TreeSet<Character>();
+        states.add(rootState);
+        ids.put(rootState, 0);
+        for (int i = 0; i < states.size(); i++) {
+            State<T> state = states.get(i);
+            alphabet.addAll(state.getTransitions());
+            for (State<T> next : state.getStates()) {
+                ids.put(next, states.size());
+                states.add(next);
+            }
+        }
+
+        int width = alphabet.size() + 1;
+        int stateCount = states.size();
+        if (width > Character.MAX_VALUE
+                || (long) stateCount * width > maximumTableSize) {
+            return null;
+        }
+
+        char[][] classPages = new char[256][];
+        Arrays.fill(classPages, EMPTY_PAGE);
+        int characterClass = 1;
+        for (char character : alphabet) {
+            if (classPages[character >>> 8] == EMPTY_PAGE) {
+                classPages[character >>> 8] = new char[256];
+            }
+            classPages[character >>> 8][character & 0xff] = (char) characterClass++;
+        }
+
+        // States are numbered breadth first, so the failure state of every
+        // state has been filled in before it. A state inherits the row of its
+        // failure state and overrides it with its own transitions.
+        int[] transitions = new int[stateCount * width];
+        int[] outputLinks = new int[stateCount];
+        int[] firstOutputStates = new int[stateCount];
+        int[] outputStarts = new int[stateCount + 1];
+        List<Integer> outputs = new ArrayList<Integer>();
+        int[] keywordLengths = new int[keywords.size()];
+        for (int id = 0; id < stateCount; id++) {
+            State<T> state = states.get(id);
+            if (id > 0) {
+                System.arraycopy(transitions, ids.get(state.failure()) * width,
+                        transitions, id * width, width);
+            }
+            for (Character character : state.getTransitions()) {
+                transitions[id * width
+                        + classPages[character >>> 8][character & 0xff]] = ids
+                        .get(state.nextState(character));
+            }
+
+            outputLinks[id] = state.output() == null ? -1 : ids.get(state
+                    .output());
+            outputStarts[id] = outputs.size();
+            for (StringPayload<T> emit : state.emits()) {
+                outputs.add(emit.keywordId);
+                keywordLengths[emit.keywordId] = state.getDepth();
+            }
+            firstOutputStates[id] = state.emits().isEmpty() ? outputLinks[id]
+                    : id;
+        }
+        outputStarts[stateCount] = outputs.size();
+
+        int[] keywordDictionaries = new int[keywords.size()];
+        for (StringPayload<T> keyword : keywords) {
+            keywordDictionaries[keyword.keywordId] = keyword.dictionary;
+        }
+
+        return new CompiledAutomaton(classPages, width, stateCount,
+                transitions, firstOutputStates, outputLinks, outputStarts,
+                toArray(outputs), keywordLengths, keywordDictionaries);
+    }
+
+    /**
+     * Adds the number of times every state is entered while scanning the text
+     * to the counts, indexed by state.
+     */
+    void countVisits(CharSequence text, boolean caseInsensitive,
+            long[] visits) {
+        int state = 0;
+        for (int position = 0; position < text.length(); position++) {
+            char character = text.charAt(position);
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            state = this.transitions[state * this.width + classOf(character)];
+            visits[state]++;
+        }
+    }
+
+    /**
+     * Returns a copy of this automaton with its states ordered on the number
+     * of visits, the most visited first, so that the rows of the states the
+     * text keeps returning to share cache lines and pages. The root state
+     * stays first; states with equal visits keep their breadth first order.
+     */
+    CompiledAutomaton relayout(final long[] visits) {
+        Integer[] order = new Integer[this.stateCount];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, 1, order.length, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                if (visits[first] != visits[second]) {
+                    return visits[first] > visits[second] ? -1 : 1;
+                }
+                return first.compareTo(second);
+            }
+
+        });
+        int[] newIds = new int[this.stateCount];
+        for (int i = 0; i < order.length; i++) {
+            newIds[order[i]] = i;
+        }
+
+        int[] newTransitions = new int[this.transitions.length];
+        int[] newFirstOutputStates = new int[this.stateCount];
+        int[] newOutputLinks = new int[this.stateCount];
+        int[] newOutputStarts = new int[this.stateCount + 1];
+        int[] newOutputs = new int[this.outputs.length];
+        int outputCount = 0;
+        for (int id = 0; id < this.stateCount; id++) {
+            int old = order[id];
+            int row = old * this.width;
+            for (int i = 0; i < this.width; i++) {
+                newTransitions[id * this.width + i] = newIds[this.transitions[row
+                        + i]];
+            }
+            newFirstOutputStates[id] = this.firstOutputStates[old] < 0 ? -1
+                    : newIds[this.firstOutputStates[old]];
+            newOutputLinks[id] = this.outputLinks[old] < 0 ? -1
+                    : newIds[this.outputLinks[old]];
+            newOutputStarts[id] = outputCount;
+            int end = this.outputStarts[old + 1];
+            for (int i = this.outputStarts[old]; i < end; i++) {
+                newOutputs[outputCount++] = this.outputs[i];
+            }
+        }
+        newOutputStarts[this.stateCount] = outputCount;
+
+        return new CompiledAutomaton(this.classPages, this.width,
+                this.stateCount, newTransitions, newFirstOutputStates,
+                newOutputLinks, newOutputStarts, newOutputs,
+                this.keywordLengths, this.keywordDictionaries);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+}
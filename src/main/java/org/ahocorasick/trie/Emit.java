@@ -9,12 +9,21 @@ public class Emit<T> extends Interval implements Serializable {
 
     private final String keyword;
     private final T payload;
+    private final int dictionary;
+    private final int keywordId;
 
     public Emit(final int start, final int end, final String keyword,
             final T payload) {
+        this(start, end, keyword, payload, 0, 0);
+    }
+
+    public Emit(final int start, final int end, final String keyword,
+            final T payload, final int dictionary, final int keywordId) {
         super(start, end);
         this.keyword = keyword;
         this.payload = payload;
+        this.dictionary = dictionary;
+        this.keywordId = keywordId;
     }
 
     public String getKeyword() {
@@ -25,10 +34,18 @@ public class Emit<T> extends Interval implements Serializable {
         return this.payload;
     }
 
+    public int getDictionary() {
+        return this.dictionary;
+    }
+
+    public int getKeywordId() {
+        return this.keywordId;
+    }
+
     @Override
     public String toString() {
         return super.toString() + "=" + this.keyword + "\n"
-                + payload.toString();
+                + this.payload;
     }
 
 }
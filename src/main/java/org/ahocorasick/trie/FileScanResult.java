@@ -0,0 +1,68 @@
+package org.ahocorasick.trie;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The matches found in one file by a {@link FileScanner}, or the error that
+ * prevented reading or matching it. The starts and ends of the emits are byte
+ * offsets in the file, both inclusive.
+ */
+public class FileScanResult<T> {
+
+    private final Path path;
+
+    private final List<Emit<T>> emits;
+
+    private final boolean truncated;
+
+    private final Throwable exception;
+
+    FileScanResult(Path path, List<Emit<T>> emits, boolean truncated) {
+        this.path = path;
+        this.emits = emits;
+        this.truncated = truncated;
+        this.exception = null;
+    }
+
+    FileScanResult(Path path, Throwable exception) {
+        this.path = path;
+        this.emits = Collections.emptyList();
+        this.truncated = false;
+        this.exception = exception;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return the matches in the file, with byte offsets, or an empty list if
+     *         the file could not be read or matched
+     */
+    public List<Emit<T>> getEmits() {
+        return this.emits;
+    }
+
+    /**
+     * @return true if matching stopped early on one of the limits of the
+     *         trie, so that matches further on in the file may be missing
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * @return the error that prevented reading or matching the file, an
+     *         IOException if it could not be read, or null if it was scanned
+     */
+    public Throwable getException() {
+        return this.exception;
+    }
+
+    public boolean isFailed() {
+        return this.exception != null;
+    }
+
+}
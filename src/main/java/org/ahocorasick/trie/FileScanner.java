@@ -0,0 +1,377 @@
+package org.ahocorasick.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Scans many files with one trie, reading and matching at the same time. The
+ * thread that calls scan reads the files with NIO into a pool of reusable
+ * buffers and hands them to a bounded queue, from which a number of worker
+ * threads decode and match them against the shared trie. While the workers
+ * match, the next files are read, so a scan takes as long as the slower of
+ * reading and matching instead of both added up. When the workers fall behind,
+ * the pool runs dry and reading waits; when reading falls behind, the workers
+ * wait for the queue.
+ * </p>
+ *
+ * <p>
+ * Every file is reported to the handler once, from one of the worker threads,
+ * with the positions of its matches as byte offsets in the file. Byte offsets
+ * are computed for UTF-8, UTF-16BE, UTF-16LE and the single byte charsets, and
+ * are exact for files that are well formed in their charset. A file whose
+ * matching fails, for instance on running out of memory, is reported with its
+ * error like a file that cannot be read, and the scan carries on.
+ * </p>
+ *
+ * <p>
+ * A file is read into a pooled buffer, grown as needed. A buffer grown beyond
+ * {@link #MAXIMUM_POOLED_BUFFER_SIZE} is dropped once its file has been
+ * decoded, so the pool holds on to no more than that per buffer however large
+ * the files were.
+ * </p>
+ */
+public class FileScanner<T> {
+
+    /** receives the result of every file, from several threads at once */
+    public interface ResultHandler<T> {
+
+        void handle(FileScanResult<T> result);
+
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /** the largest buffer that is returned to the pool */
+    public static final int MAXIMUM_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int UTF_8 = 0;
+    private static final int UTF_16 = 1;
+    private static final int SINGLE_BYTE = 2;
+
+    /** marks the end of the files in the queue */
+    private static final Job END = new Job(null, null, 0, null);
+
+    private final Trie<T> trie;
+
+    private final Charset charset;
+
+    private final int encoding;
+
+    private final int workers;
+
+    private final int queueCapacity;
+
+    public FileScanner(Trie<T> trie, Charset charset) {
+        this(trie, charset, Runtime.getRuntime().availableProcessors(), 16);
+    }
+
+    /**
+     * @param trie the trie to match with, shared by all workers
+     * @param charset the charset of the files
+     * @param workers the number of threads that match
+     * @param queueCapacity the number of files that may be read ahead of the
+     *            workers
+     */
+    public FileScanner(Trie<T> trie, Charset charset, int workers,
+            int queueCapacity) {
+        if (workers <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Workers and queue capacity must be positive");
+        }
+        String name = charset.name();
+        if (name.equals("UTF-8")) {
+            this.encoding = UTF_8;
+        } else if (name.equals("UTF-16BE") || name.equals("UTF-16LE")) {
+            this.encoding = UTF_16;
+        } else if (charset.newEncoder().maxBytesPerChar() == 1) {
+            this.encoding = SINGLE_BYTE;
+        } else {
+            throw new IllegalArgumentException(
+                    "Byte offsets cannot be computed for " + name);
+        }
+        this.trie = trie.build();
+        this.charset = charset;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Scans all regular files below the directory.
+     *
+     * @see #scan(Iterable, ResultHandler)
+     */
+    public void scan(Path directory, ResultHandler<T> handler)
+            throws IOException, InterruptedException {
+        final List<Path> files = new ArrayList<Path>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+        scan(files, handler);
+    }
+
+    /**
+     * Scans the files and returns once every file has been reported to the
+     * handler. A file that cannot be read or matched is reported with its
+     * error.
+     *
+     * @throws RuntimeException the first exception thrown by the handler,
+     *             after the remaining files have been scanned
+     * @throws Error the first error thrown by the handler, in the same way
+     */
+    public void scan(Iterable<Path> files, ResultHandler<T> handler)
+            throws InterruptedException {
+        BlockingQueue<Job> queue = new ArrayBlockingQueue<Job>(
+                this.queueCapacity);
+        BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(
+                this.queueCapacity + this.workers);
+        while (pool.remainingCapacity() > 0) {
+            pool.add(ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        List<Thread> threads = new ArrayList<Thread>(this.workers);
+        for (int i = 0; i < this.workers; i++) {
+            Thread thread = new Thread(new Worker(queue, pool, handler,
+                    failure), "file-scanner-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            for (Path file : files) {
+                ByteBuffer buffer = pool.take();
+                try {
+                    buffer = read(file, buffer);
+                    queue.put(new Job(file, buffer, buffer.limit(), null));
+                } catch (IOException e) {
+                    pool.put(buffer);
+                    queue.put(new Job(file, null, 0, e));
+                }
+            }
+        } finally {
+            for (int i = 0; i < this.workers; i++) {
+                queue.put(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        Throwable thrown = failure.get();
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+        if (thrown != null) {
+            throw (RuntimeException) thrown;
+        }
+    }
+
+    /**
+     * Reads the whole file into the buffer, or into a larger one if it does
+     * not fit. Up to the maximum pooled size a larger buffer at least doubles,
+     * so that it is not outgrown again by the next file; above it, it takes
+     * the size of the file.
+     */
+    private static ByteBuffer read(Path file, ByteBuffer buffer)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large to scan: " + file);
+            }
+            if (size > buffer.capacity()) {
+                buffer = ByteBuffer.allocate((int) Math.max(size, Math.min(
+                        buffer.capacity() * 2L, MAXIMUM_POOLED_BUFFER_SIZE)));
+            }
+            buffer.clear();
+            while (channel.read(buffer) >= 0 && buffer.hasRemaining()) {
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static class Job {
+
+        final Path path;
+        final ByteBuffer buffer;
+        final int length;
+        final IOException exception;
+
+        Job(Path path, ByteBuffer buffer, int length, IOException exception) {
+            this.path = path;
+            this.buffer = buffer;
+            this.length = length;
+            this.exception = exception;
+        }
+
+    }
+
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Job> queue;
+        private final BlockingQueue<ByteBuffer> pool;
+        private final ResultHandler<T> handler;
+        private final AtomicReference<Throwable> failure;
+
+        private final MatchBuffer matches = new MatchBuffer();
+
+        /**
+         * the character positions whose byte offsets are needed, each in the
+         * high half of a long above its index in the offsets
+         */
+        private long[] positions = new long[64];
+
+        private int[] byteOffsets = new int[64];
+
+        Worker(BlockingQueue<Job> queue, BlockingQueue<ByteBuffer> pool,
+                ResultHandler<T> handler, AtomicReference<Throwable> failure) {
+            this.queue = queue;
+            this.pool = pool;
+            this.handler = handler;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Job job = this.queue.take(); job != END; job = this.queue
+                        .take()) {
+                    FileScanResult<T> result;
+                    try {
+                        result = scan(job);
+                    } catch (Throwable e) {
+                        result = new FileScanResult<T>(job.path, e);
+                    }
+                    try {
+                        this.handler.handle(result);
+                    } catch (Throwable e) {
+                        this.failure.compareAndSet(null, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private FileScanResult<T> scan(Job job) {
+            if (job.exception != null) {
+                return new FileScanResult<T>(job.path, job.exception);
+            }
+            String text;
+            try {
+                text = new String(job.buffer.array(), 0, job.length, charset);
+            } finally {
+                release(job.buffer);
+            }
+            List<Emit<T>> emits = match(text);
+            return new FileScanResult<T>(job.path, emits, this.matches
+                    .isTruncated());
+        }
+
+        /**
+         * Returns the buffer to the pool, or a new one of the initial size if
+         * it has grown too large to keep. The pool has room for every buffer,
+         * so this never waits.
+         */
+        private void release(ByteBuffer buffer) {
+            this.pool.offer(buffer.capacity() > MAXIMUM_POOLED_BUFFER_SIZE
+                    ? ByteBuffer.allocate(INITIAL_BUFFER_SIZE) : buffer);
+        }
+
+        private List<Emit<T>> match(String text) {
+            trie.parseText(text, this.matches);
+            List<Emit<T>> emits = new ArrayList<Emit<T>>(this.matches.size());
+            if (this.matches.isEmpty()) {
+                return emits;
+            }
+            computeByteOffsets(text);
+            for (int i = 0; i < this.matches.size(); i++) {
+                int keywordId = this.matches.getKeywordId(i);
+                emits.add(new Emit<T>(this.byteOffsets[2 * i],
+                        this.byteOffsets[2 * i + 1] - 1, trie
+                                .getKeyword(keywordId), trie
+                                .getKeywordPayload(keywordId), trie
+                                .getKeywordDictionary(keywordId), keywordId));
+            }
+            return emits;
+        }
+
+        /**
+         * Computes the byte offsets of the start and of the character after
+         * the end of every match, into byteOffsets at twice and twice plus one
+         * the index of the match. The positions are sorted, so the text is
+         * walked once, only as far as the last match.
+         */
+        private void computeByteOffsets(String text) {
+            int count = 2 * this.matches.size();
+            if (this.positions.length < count) {
+                this.positions = new long[count];
+                this.byteOffsets = new int[count];
+            }
+            for (int i = 0; i < this.matches.size(); i++) {
+                this.positions[2 * i] = (long) this.matches.getStart(i) << 32
+                        | 2 * i;
+                this.positions[2 * i + 1] = (long) (this.matches.getEnd(i) + 1) << 32
+                        | 2 * i + 1;
+            }
+            Arrays.sort(this.positions, 0, count);
+            int position = 0;
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                int target = (int) (this.positions[i] >>> 32);
+                for (; position < target; position++) {
+                    offset += byteLength(text.charAt(position));
+                }
+                this.byteOffsets[(int) this.positions[i]] = offset;
+            }
+        }
+
+        private int byteLength(char character) {
+            if (encoding == SINGLE_BYTE) {
+                return 1;
+            } else if (encoding == UTF_16) {
+                return 2;
+            } else if (character < 0x80) {
+                return 1;
+            } else if (character < 0x800) {
+                return 2;
+            } else if (Character.isHighSurrogate(character)) {
+                // the pair takes four bytes, counted at the high half
+                return 4;
+            } else if (Character.isLowSurrogate(character)) {
+                return 0;
+            }
+            return 3;
+        }
+
+    }
+
+}
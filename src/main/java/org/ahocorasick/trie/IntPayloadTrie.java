@@ -0,0 +1,52 @@
+package org.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * A trie with an int payload per keyword. The payloads are kept in an array
+ * indexed by keyword id, so they are never boxed. The emits produced by this
+ * trie carry no payload object; look the payload up with
+ * {@link #getPayload(Emit)}.
+ */
+@SuppressWarnings("serial")
+public class IntPayloadTrie extends PrimitivePayloadTrie<IntPayloadTrie> {
+
+    private int[] payloads = new int[16];
+
+    public IntPayloadTrie(TrieConfig trieConfig) {
+        super(trieConfig);
+    }
+
+    public IntPayloadTrie() {
+        this(new TrieConfig());
+    }
+
+    public int addKeyword(String keyword, int payload) {
+        return addKeyword(keyword, payload, 0);
+    }
+
+    public int addKeyword(String keyword, int payload, int dictionary) {
+        int keywordId = addKeywordId(keyword, dictionary);
+        if (keywordId >= 0) {
+            if (keywordId >= this.payloads.length) {
+                this.payloads = Arrays.copyOf(this.payloads,
+                        grow(keywordId, this.payloads.length));
+            }
+            this.payloads[keywordId] = payload;
+        }
+        return keywordId;
+    }
+
+    public int getPayload(Emit<?> emit) {
+        return getPayload(emit.getKeywordId());
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no keyword with the id
+     */
+    public int getPayload(int keywordId) {
+        checkKeywordId(keywordId);
+        return this.payloads[keywordId];
+    }
+
+}
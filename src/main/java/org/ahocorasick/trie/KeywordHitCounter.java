@@ -0,0 +1,207 @@
+package org.ahocorasick.trie;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Counts the matches of every keyword of a trie, to find the keywords that
+ * never match and can be pruned, and the ones that match most. The counters
+ * are striped like those of a LongAdder: all threads start out counting in one
+ * array of counters, and a thread that finds another thread writing to the
+ * same counter moves on to another stripe, which is created when it is first
+ * needed. Threads that contend end up on different stripes, so counting stays
+ * cheap under concurrent parsing; the stripes are only added up when the
+ * counts are read.
+ * </p>
+ *
+ * <p>
+ * A stripe is a plain array of counters, not padded: the counters of
+ * neighbouring keywords share a cache line, so threads counting different but
+ * neighbouring hot keywords still slow each other down. Only a failed update
+ * of the same counter moves a thread to another stripe, so that kind of false
+ * sharing is not spread out.
+ * </p>
+ *
+ * <p>
+ * A stripe takes eight bytes per keyword. Without contention there is only
+ * one; the number of stripes never exceeds the maximum the counter was
+ * created with, which bounds the memory however many threads count.
+ * </p>
+ *
+ * <p>
+ * The counts are exact. A snapshot taken while parses are running may miss
+ * the matches of those parses, which are counted when they complete.
+ * </p>
+ */
+public class KeywordHitCounter {
+
+    /** the default maximum number of stripes */
+    public static final int DEFAULT_MAXIMUM_STRIPES = 4;
+
+    /**
+     * the stripe every thread counts in, shared by all counters; 0 until the
+     * thread first meets contention
+     */
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+
+    };
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    private final int mask;
+
+    private final int keywordCount;
+
+    /**
+     * Creates a counter with at most {@link #DEFAULT_MAXIMUM_STRIPES}
+     * stripes.
+     */
+    public KeywordHitCounter(int keywordCount) {
+        this(keywordCount, DEFAULT_MAXIMUM_STRIPES);
+    }
+
+    /**
+     * @param keywordCount the number of keywords to count, which bounds the
+     *            keyword ids
+     * @param maximumStripes the largest number of stripes created under
+     *            contention, rounded up to a power of two
+     */
+    public KeywordHitCounter(int keywordCount, int maximumStripes) {
+        if (maximumStripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive: "
+                    + maximumStripes);
+        }
+        int size = Integer.highestOneBit(maximumStripes);
+        if (size < maximumStripes) {
+            size <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<AtomicLongArray>(size);
+        this.stripes.set(0, new AtomicLongArray(keywordCount));
+        this.mask = size - 1;
+        this.keywordCount = keywordCount;
+    }
+
+    public int getKeywordCount() {
+        return this.keywordCount;
+    }
+
+    /**
+     * Counts a match of the keyword. Keyword ids beyond the keyword count are
+     * ignored.
+     */
+    public void increment(int keywordId) {
+        if (keywordId < this.keywordCount) {
+            int[] probe = PROBE.get();
+            increment(stripe(probe[0]), keywordId, probe);
+        }
+    }
+
+    /**
+     * Counts all matches in the buffer.
+     */
+    public void increment(MatchBuffer buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        int[] probe = PROBE.get();
+        int[] keywordIds = buffer.getKeywordIds();
+        for (int i = 0; i < buffer.size(); i++) {
+            if (keywordIds[i] < this.keywordCount) {
+                increment(stripe(probe[0]), keywordIds[i], probe);
+            }
+        }
+    }
+
+    /**
+     * Counts on the stripe, or if another thread is writing the same counter,
+     * moves the thread to another stripe and counts there.
+     */
+    private void increment(AtomicLongArray stripe, int keywordId, int[] probe) {
+        long hits = stripe.get(keywordId);
+        if (stripe.compareAndSet(keywordId, hits, hits + 1)) {
+            return;
+        }
+        if (this.mask != 0) {
+            probe[0] = ThreadLocalRandom.current().nextInt();
+            stripe = stripe(probe[0]);
+        }
+        stripe.incrementAndGet(keywordId);
+    }
+
+    public long getHits(int keywordId) {
+        long hits = 0;
+        for (int i = 0; i < this.stripes.length(); i++) {
+            AtomicLongArray stripe = this.stripes.get(i);
+            if (stripe != null) {
+                hits += stripe.get(keywordId);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return the number of matches of every keyword, indexed by keyword id
+     */
+    public long[] snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Returns the number of matches of every keyword and resets them to zero,
+     * without losing matches counted in between.
+     */
+    public long[] snapshotAndReset() {
+        return collect(true);
+    }
+
+    public void reset() {
+        collect(true);
+    }
+
+    /**
+     * @return the number of stripes created so far
+     */
+    int getStripeCount() {
+        int count = 0;
+        for (int i = 0; i < this.stripes.length(); i++) {
+            if (this.stripes.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long[] collect(boolean reset) {
+        long[] hits = new long[this.keywordCount];
+        for (int s = 0; s < this.stripes.length(); s++) {
+            AtomicLongArray stripe = this.stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < this.keywordCount; i++) {
+                hits[i] += reset ? stripe.getAndSet(i, 0) : stripe.get(i);
+            }
+        }
+        return hits;
+    }
+
+    private AtomicLongArray stripe(int probe) {
+        int index = probe & this.mask;
+        AtomicLongArray stripe = this.stripes.get(index);
+        if (stripe == null) {
+            // Threads racing to create the stripe agree on the first one set
+            this.stripes.compareAndSet(index, null, new AtomicLongArray(
+                    this.keywordCount));
+            stripe = this.stripes.get(index);
+        }
+        return stripe;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * A trie with a long payload per keyword. The payloads are kept in an array
+ * indexed by keyword id, so they are never boxed. The emits produced by this
+ * trie carry no payload object; look the payload up with
+ * {@link #getPayload(Emit)}.
+ */
+@SuppressWarnings("serial")
+public class LongPayloadTrie extends PrimitivePayloadTrie<LongPayloadTrie> {
+
+    private long[] payloads = new long[16];
+
+    public LongPayloadTrie(TrieConfig trieConfig) {
+        super(trieConfig);
+    }
+
+    public LongPayloadTrie() {
+        this(new TrieConfig());
+    }
+
+    public int addKeyword(String keyword, long payload) {
+        return addKeyword(keyword, payload, 0);
+    }
+
+    public int addKeyword(String keyword, long payload, int dictionary) {
+        int keywordId = addKeywordId(keyword, dictionary);
+        if (keywordId >= 0) {
+            if (keywordId >= this.payloads.length) {
+                this.payloads = Arrays.copyOf(this.payloads,
+                        grow(keywordId, this.payloads.length));
+            }
+            this.payloads[keywordId] = payload;
+        }
+        return keywordId;
+    }
+
+    public long getPayload(Emit<?> emit) {
+        return getPayload(emit.getKeywordId());
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no keyword with the id
+     */
+    public long getPayload(int keywordId) {
+        checkKeywordId(keywordId);
+        return this.payloads[keywordId];
+    }
+
+}
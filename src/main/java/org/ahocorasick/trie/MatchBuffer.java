@@ -0,0 +1,173 @@
+package org.ahocorasick.trie;
+
+import java.util.Arrays;
+
+import org.ahocorasick.interval.IntervalSelector;
+
+/**
+ * <p>
+ * Holds matches as parallel arrays of starts, ends and keyword ids instead of
+ * as individual emit objects. The arrays grow on demand and are kept when the
+ * buffer is cleared, so passing the same buffer to every
+ * {@link Trie#parseText(String, MatchBuffer)} call makes the scan allocation
+ * free once the buffer has grown to size.
+ * </p>
+ *
+ * <p>
+ * The arrays returned by the getters are the backing arrays; only the first
+ * {@link #size()} elements are valid, and they are overwritten by the next
+ * parse. Look up the keyword or payload of a match on the trie, by keyword
+ * id.
+ * </p>
+ */
+public class MatchBuffer {
+
+    private int[] starts;
+    private int[] ends;
+    private int[] keywordIds;
+    private int size = 0;
+    private boolean truncated = false;
+
+    /** scratch space for removing overlaps, allocated on first use */
+    private IntervalSelector intervalSelector;
+    private int[] selected;
+    private int[] spareStarts;
+    private int[] spareEnds;
+    private int[] spareKeywordIds;
+
+    public MatchBuffer() {
+        this(16);
+    }
+
+    public MatchBuffer(int initialCapacity) {
+        this.starts = new int[initialCapacity];
+        this.ends = new int[initialCapacity];
+        this.keywordIds = new int[initialCapacity];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getStart(int index) {
+        return this.starts[index];
+    }
+
+    public int getEnd(int index) {
+        return this.ends[index];
+    }
+
+    public int getKeywordId(int index) {
+        return this.keywordIds[index];
+    }
+
+    public int[] getStarts() {
+        return this.starts;
+    }
+
+    public int[] getEnds() {
+        return this.ends;
+    }
+
+    public int[] getKeywordIds() {
+        return this.keywordIds;
+    }
+
+    /**
+     * @return true if the parse that filled this buffer stopped early because
+     *         it hit one of the limits of the trie configuration or was
+     *         cancelled; the buffer then holds the matches found until then
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.truncated = false;
+    }
+
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+        this.truncated = true;
+    }
+
+    public void add(int start, int end, int keywordId) {
+        if (this.size == this.starts.length) {
+            int capacity = Math.max(16, this.size * 2);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.keywordIds = Arrays.copyOf(this.keywordIds, capacity);
+        }
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.keywordIds[this.size] = keywordId;
+        this.size++;
+    }
+
+    /**
+     * Removes the matches that are preceded or followed by a letter in the
+     * text they were found in.
+     */
+    public void removePartialMatches(CharSequence text) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            int start = this.starts[i];
+            int end = this.ends[i];
+            if (isWholeWord(text, start, end)) {
+                this.starts[kept] = start;
+                this.ends[kept] = end;
+                this.keywordIds[kept] = this.keywordIds[i];
+                kept++;
+            }
+        }
+        this.size = kept;
+    }
+
+    static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !Character.isAlphabetic(text.charAt(start - 1)))
+                && (end + 1 == text.length() || !Character.isAlphabetic(text
+                        .charAt(end + 1)));
+    }
+
+    /**
+     * Removes overlapping matches, retaining the longest and left-most ones,
+     * and orders the remaining matches on their start.
+     */
+    public void removeOverlaps() {
+        if (this.intervalSelector == null) {
+            this.intervalSelector = new IntervalSelector();
+        }
+        if (this.selected == null || this.selected.length < this.size) {
+            int capacity = this.starts.length;
+            this.selected = new int[capacity];
+            this.spareStarts = new int[capacity];
+            this.spareEnds = new int[capacity];
+            this.spareKeywordIds = new int[capacity];
+        }
+        int kept = this.intervalSelector.removeOverlaps(this.starts, this.ends,
+                this.size, this.selected);
+        for (int i = 0; i < kept; i++) {
+            int index = this.selected[i];
+            this.spareStarts[i] = this.starts[index];
+            this.spareEnds[i] = this.ends[index];
+            this.spareKeywordIds[i] = this.keywordIds[index];
+        }
+
+        int[] swap = this.starts;
+        this.starts = this.spareStarts;
+        this.spareStarts = swap;
+        swap = this.ends;
+        this.ends = this.spareEnds;
+        this.spareEnds = swap;
+        swap = this.keywordIds;
+        this.keywordIds = this.spareKeywordIds;
+        this.spareKeywordIds = swap;
+        this.size = kept;
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.ahocorasick.trie;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the matches of a matcher as emits, finding every next match
+ * only when it is asked for.
+ */
+class MatchIterator<T> implements Iterator<Emit<T>> {
+
+    private final Matcher<T> matcher;
+
+    /** whether the matcher holds a match that has not been returned yet */
+    private boolean found = false;
+
+    private boolean finished = false;
+
+    MatchIterator(Matcher<T> matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.found && !this.finished) {
+            this.found = this.matcher.find();
+            this.finished = !this.found;
+        }
+        return this.found;
+    }
+
+    @Override
+    public Emit<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        this.found = false;
+        return this.matcher.toEmit();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
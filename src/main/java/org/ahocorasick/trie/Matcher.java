@@ -0,0 +1,263 @@
+package org.ahocorasick.trie;
+
+import java.util.BitSet;
+
+import org.ahocorasick.trie.State.StringPayload;
+
+/**
+ * <p>
+ * Finds the keywords of a trie in a text one at a time, in the style of
+ * java.util.regex.Matcher:
+ * </p>
+ *
+ * <pre>
+ * Matcher&lt;String&gt; matcher = trie.matcher(text);
+ * while (matcher.find()) {
+ *     handle(matcher.getStart(), matcher.getEnd(), matcher.getKeyword());
+ * }
+ * </pre>
+ *
+ * <p>
+ * Matches are found in the order they end in, as parseText reports them when
+ * overlaps are allowed. Case insensitivity and whole word matching are
+ * honoured; overlap removal needs all matches at once and is not applied, nor
+ * are the parse limits. Characters are normalized as they are read, like
+ * parseText does. A matcher keeps no state between texts other than its
+ * position, so resetting it to the next text costs next to nothing. A matcher
+ * is not thread safe; give every thread its own.
+ * </p>
+ */
+public class Matcher<T> {
+
+    private final Trie<T> trie;
+
+    private final BitSet dictionaries;
+
+    private final boolean caseInsensitive;
+
+    private final boolean onlyWholeWords;
+
+    private final CharNormalizer normalizer;
+
+    /** the original positions of the last normalized characters */
+    private PositionRing positions;
+
+    private int previous;
+
+    private KeywordHitCounter hitCounter;
+
+    private CharSequence text;
+
+    private int length;
+
+    /** the position of the next character to read */
+    private int position;
+
+    /** the automaton the text is matched with, one of the three */
+    private State<T> rootState;
+
+    private MinimizedAutomaton minimized;
+
+    private CompiledAutomaton compiled;
+
+    private State<T> currentState;
+
+    private long current;
+
+    private int compiledState;
+
+    /** the matches that end at the last character read */
+    private final MatchBuffer pending = new MatchBuffer();
+
+    private int pendingIndex;
+
+    private StringPayload<T> match;
+
+    private int start;
+
+    private int end;
+
+    Matcher(Trie<T> trie, TrieConfig trieConfig, BitSet dictionaries) {
+        this.trie = trie;
+        this.dictionaries = dictionaries;
+        this.caseInsensitive = trieConfig.isCaseInsensitive();
+        this.onlyWholeWords = trieConfig.isOnlyWholeWords();
+        this.normalizer = trieConfig.getCharNormalizer();
+    }
+
+    /**
+     * Starts matching a new text from its beginning.
+     */
+    public Matcher<T> reset(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+        return reset();
+    }
+
+    /**
+     * Starts matching the current text from its beginning again, with the
+     * automaton of the trie as it is now.
+     */
+    public Matcher<T> reset() {
+        this.trie.checkForConstructedFailureStates();
+        this.rootState = this.trie.getRootState();
+        this.minimized = this.trie.getMinimized();
+        this.compiled = this.trie.getCompiled();
+        this.hitCounter = this.trie.getHitCounter();
+        this.position = 0;
+        this.currentState = this.rootState;
+        this.current = 0;
+        this.compiledState = 0;
+        this.pending.clear();
+        this.pendingIndex = 0;
+        this.match = null;
+        this.previous = CharNormalizer.NONE;
+        if (this.normalizer != null) {
+            // Keywords may have been added since the ring was made
+            if (this.positions == null
+                    || this.positions.capacity() < this.trie
+                            .getMaximumKeywordLength()) {
+                this.positions = new PositionRing(this.trie
+                        .getMaximumKeywordLength());
+            }
+            this.positions.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Advances to the next match.
+     *
+     * @return true if a match was found, false if the end of the text was
+     *         reached
+     */
+    public boolean find() {
+        for (;;) {
+            while (this.pendingIndex < this.pending.size()) {
+                int index = this.pendingIndex++;
+                int emitStart = this.pending.getStart(index);
+                int emitEnd = this.pending.getEnd(index);
+                if (this.onlyWholeWords
+                        && !MatchBuffer.isWholeWord(this.text, emitStart,
+                                emitEnd)) {
+                    continue;
+                }
+                this.match = this.trie.getOutput(this.pending
+                        .getKeywordId(index));
+                this.start = emitStart;
+                this.end = emitEnd;
+                if (this.hitCounter != null) {
+                    this.hitCounter.increment(this.match.keywordId);
+                }
+                return true;
+            }
+
+            if (isAtRoot() && this.normalizer == null) {
+                this.position = this.trie.skipToStartCharacter(this.text,
+                        this.position, this.length, this.caseInsensitive);
+            }
+            if (this.position >= this.length) {
+                this.match = null;
+                return false;
+            }
+            int read = this.position++;
+            char character = this.text.charAt(read);
+            if (this.normalizer != null) {
+                int normalized = this.normalizer.normalize(character,
+                        this.previous);
+                if (normalized == CharNormalizer.IGNORE) {
+                    continue;
+                }
+                this.previous = normalized;
+                character = (char) normalized;
+                this.positions.add(read);
+            }
+            if (this.caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            this.pending.clear();
+            this.pendingIndex = 0;
+            if (this.minimized != null) {
+                this.current = this.minimized.next(this.current, character);
+                if (this.minimized.hasOutputs(this.current)) {
+                    Trie.storeEmits(this.minimized, read, this.current,
+                            this.dictionaries, this.pending);
+                }
+            } else if (this.compiled != null) {
+                this.compiledState = this.compiled.transitions[this.compiledState
+                        * this.compiled.width
+                        + this.compiled.classOf(character)];
+                int outputState = this.compiled.firstOutputStates[this.compiledState];
+                if (outputState >= 0) {
+                    Trie.storeEmits(this.compiled, read, outputState,
+                            this.dictionaries, this.pending);
+                }
+            } else {
+                this.currentState = this.trie.getState(this.currentState,
+                        character);
+                int end = this.normalizer == null ? read : Trie
+                        .extendOverIgnored(this.normalizer, this.text, read,
+                                this.length, this.previous);
+                this.trie.storeEmits(end, this.currentState,
+                        this.dictionaries, this.pending, this.positions);
+            }
+        }
+    }
+
+    private boolean isAtRoot() {
+        if (this.minimized != null) {
+            return this.current == 0;
+        }
+        if (this.compiled != null) {
+            return this.compiledState == 0;
+        }
+        return this.currentState == this.rootState;
+    }
+
+    public int getStart() {
+        checkMatch();
+        return this.start;
+    }
+
+    public int getEnd() {
+        checkMatch();
+        return this.end;
+    }
+
+    public String getKeyword() {
+        checkMatch();
+        return this.match.keyword;
+    }
+
+    public T getPayload() {
+        checkMatch();
+        return this.match.payload;
+    }
+
+    public int getDictionary() {
+        checkMatch();
+        return this.match.dictionary;
+    }
+
+    public int getKeywordId() {
+        checkMatch();
+        return this.match.keywordId;
+    }
+
+    /**
+     * @return the current match as an emit
+     */
+    public Emit<T> toEmit() {
+        checkMatch();
+        return new Emit<T>(this.start, this.end, this.match.keyword,
+                this.match.payload, this.match.dictionary,
+                this.match.keywordId);
+    }
+
+    private void checkMatch() {
+        if (this.match == null) {
+            throw new IllegalStateException("No match available");
+        }
+    }
+
+}
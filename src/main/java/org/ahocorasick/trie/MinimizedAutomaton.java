@@ -0,0 +1,341 @@
+package org.ahocorasick.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ahocorasick.trie.State.StringPayload;
+
+/**
+ * <p>
+ * The automaton of a trie with its equivalent subtrees merged, DAWG style,
+ * held in flat arrays. Two states are merged when both or neither end a
+ * keyword, they fail to the same state and their transitions lead to merged
+ * states on the same characters. A suffix such as "-ations" that follows many
+ * stems then takes a single chain of states instead of one chain per stem.
+ * </p>
+ *
+ * <p>
+ * A merged state no longer tells which keyword a path through it ends in, so
+ * every transition carries a weight, as in a minimal perfect hash over a DAWG:
+ * the sum of the weights along the path to a state that ends a keyword is the
+ * rank of that keyword among all distinct keywords in sorted order, and the
+ * rank leads to the keyword ids. A scan therefore carries the rank of the
+ * current prefix along with the state. A failure transition replaces it with
+ * the rank of the prefix the failure state stands for, which merged states
+ * share because they fail to the same state; the output links carry the rank
+ * of their target in the same way.
+ * </p>
+ *
+ * <p>
+ * A scan position is packed in a long, the state in the low half and the rank
+ * in the high half, so the root state is 0.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class MinimizedAutomaton implements Serializable {
+
+    final int stateCount;
+
+    /**
+     * the transitions of state i are held from transitionStarts[i] until
+     * transitionStarts[i + 1], ordered on their character
+     */
+    final int[] transitionStarts;
+
+    final char[] transitionCharacters;
+
+    final int[] transitionTargets;
+
+    /** the rank added when the transition is taken */
+    final int[] transitionWeights;
+
+    final int[] failures;
+
+    /** the rank of the prefix the failure state of every state stands for */
+    final int[] failureRanks;
+
+    /** whether every state ends a keyword */
+    final boolean[] accepting;
+
+    /**
+     * the nearest state on the failure chain of every state that ends a
+     * keyword, or -1, and the rank of that keyword
+     */
+    final int[] outputStates;
+
+    final int[] outputRanks;
+
+    /**
+     * the ids of the keywords of rank i are held in rankKeywordIds, from
+     * rankStarts[i] until rankStarts[i + 1]
+     */
+    final int[] rankStarts;
+
+    final int[] rankKeywordIds;
+
+    /** the length of the keyword of every rank */
+    final int[] rankLengths;
+
+    /** the dictionary of every keyword, by keyword id */
+    final int[] keywordDictionaries;
+
+    private MinimizedAutomaton(int stateCount, int[] transitionStarts,
+            char[] transitionCharacters, int[] transitionTargets,
+            int[] transitionWeights, int[] failures, int[] failureRanks,
+            boolean[] accepting, int[] outputStates, int[] outputRanks,
+            int[] rankStarts, int[] rankKeywordIds, int[] rankLengths,
+            int[] keywordDictionaries) {
+        this.stateCount = stateCount;
+        this.transitionStarts = transitionStarts;
+        this.transitionCharacters = transitionCharacters;
+        this.transitionTargets = transitionTargets;
+        this.transitionWeights = transitionWeights;
+        this.failures = failures;
+        this.failureRanks = failureRanks;
+        this.accepting = accepting;
+        this.outputStates = outputStates;
+        this.outputRanks = outputRanks;
+        this.rankStarts = rankStarts;
+        this.rankKeywordIds = rankKeywordIds;
+        this.rankLengths = rankLengths;
+        this.keywordDictionaries = keywordDictionaries;
+    }
+
+    /**
+     * @return the scan position after reading the character
+     */
+    long next(long current, char character) {
+        int state = (int) current;
+        int rank = (int) (current >>> 32);
+        for (;;) {
+            int transition = find(state, character);
+            if (transition >= 0) {
+                return pack(this.transitionTargets[transition], rank
+                        + this.transitionWeights[transition]);
+            }
+            if (state == 0) {
+                return 0;
+            }
+            rank = this.failureRanks[state];
+            state = this.failures[state];
+        }
+    }
+
+    /**
+     * @return whether reaching the state ends any keyword
+     */
+    boolean hasOutputs(long current) {
+        int state = (int) current;
+        return this.accepting[state] || this.outputStates[state] >= 0;
+    }
+
+    int transitionCount() {
+        return this.transitionStarts[this.stateCount];
+    }
+
+    private int find(int state, char character) {
+        int low = this.transitionStarts[state];
+        int high = this.transitionStarts[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char found = this.transitionCharacters[middle];
+            if (found < character) {
+                low = middle + 1;
+            } else if (found > character) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    static long pack(int state, int rank) {
+        return ((long) rank << 32) | state;
+    }
+
+    /**
+     * Minimizes the automaton below the root state, whose failure states must
+     * have been constructed.
+     */
+    static <T> MinimizedAutomaton minimize(State<T> rootState,
+            List<StringPayload<T>> keywords) {
+        // Number the states breadth first, so children come after parents
+        List<State<T>> states = new ArrayList<State<T>>();
+        Map<State<T>, Integer> ids = new IdentityHashMap<State<T>, Integer>();
+        states.add(rootState);
+        ids.put(rootState, 0);
+        for (int i = 0; i < states.size(); i++) {
+            for (State<T> next : states.get(i).getStates()) {
+                ids.put(next, states.size());
+                states.add(next);
+            }
+        }
+        int count = states.size();
+
+        // The number of distinct keywords below every state, and the rank of
+        // every prefix: the number of distinct keywords that sort before it
+        int[] keywordsBelow = new int[count];
+        for (int id = count - 1; id >= 0; id--) {
+            State<T> state = states.get(id);
+            keywordsBelow[id] = state.emits().isEmpty() ? 0 : 1;
+            for (State<T> next : state.getStates()) {
+                keywordsBelow[id] += keywordsBelow[ids.get(next)];
+            }
+        }
+        int[] ranks = new int[count];
+        for (int id = 0; id < count; id++) {
+            State<T> state = states.get(id);
+            int rank = ranks[id] + (state.emits().isEmpty() ? 0 : 1);
+            for (State<T> next : state.getStates()) {
+                int nextId = ids.get(next);
+                ranks[nextId] = rank;
+                rank += keywordsBelow[nextId];
+            }
+        }
+
+        // Merge the states bottom up: a state is equivalent to an earlier one
+        // if its signature, which refers to the classes of its children, is
+        // equal. The root state is the only one without a failure state, so
+        // it stays apart.
+        int[] classes = new int[count];
+        List<Integer> representatives = new ArrayList<Integer>();
+        Map<Signature, Integer> signatures = new HashMap<Signature, Integer>();
+        for (int id = count - 1; id >= 0; id--) {
+            State<T> state = states.get(id);
+            int[] signature = new int[2 + 2 * state.getTransitions().size()];
+            signature[0] = state.emits().isEmpty() ? 0 : 1;
+            signature[1] = id == 0 ? -1 : ids.get(state.failure());
+            int i = 2;
+            for (Character character : state.getTransitions()) {
+                signature[i++] = character;
+                signature[i++] = classes[ids.get(state.nextState(character))];
+            }
+            Signature key = new Signature(signature);
+            Integer existing = signatures.get(key);
+            if (existing == null) {
+                existing = representatives.size();
+                representatives.add(id);
+                signatures.put(key, existing);
+            }
+            classes[id] = existing;
+        }
+        signatures = null;
+
+        // Number the merged states in breadth first order of their first
+        // state, which puts the root state at 0
+        int stateCount = representatives.size();
+        int[] numbers = new int[stateCount];
+        Arrays.fill(numbers, -1);
+        int[] order = new int[stateCount];
+        int next = 0;
+        for (int id = 0; id < count; id++) {
+            if (numbers[classes[id]] < 0) {
+                numbers[classes[id]] = next;
+                order[next++] = representatives.get(classes[id]);
+            }
+        }
+
+        int[] transitionStarts = new int[stateCount + 1];
+        for (int number = 0; number < stateCount; number++) {
+            transitionStarts[number + 1] = transitionStarts[number]
+                    + states.get(order[number]).getTransitions().size();
+        }
+        int transitionCount = transitionStarts[stateCount];
+        char[] transitionCharacters = new char[transitionCount];
+        int[] transitionTargets = new int[transitionCount];
+        int[] transitionWeights = new int[transitionCount];
+        int[] failures = new int[stateCount];
+        int[] failureRanks = new int[stateCount];
+        boolean[] accepting = new boolean[stateCount];
+        int[] outputStates = new int[stateCount];
+        int[] outputRanks = new int[stateCount];
+        for (int number = 0; number < stateCount; number++) {
+            int id = order[number];
+            State<T> state = states.get(id);
+            int transition = transitionStarts[number];
+            for (Character character : state.getTransitions()) {
+                int target = ids.get(state.nextState(character));
+                transitionCharacters[transition] = character;
+                transitionTargets[transition] = numbers[classes[target]];
+                transitionWeights[transition] = ranks[target] - ranks[id];
+                transition++;
+            }
+            if (id > 0) {
+                int failure = ids.get(state.failure());
+                failures[number] = numbers[classes[failure]];
+                failureRanks[number] = ranks[failure];
+            }
+            accepting[number] = !state.emits().isEmpty();
+            if (state.output() == null) {
+                outputStates[number] = -1;
+            } else {
+                int output = ids.get(state.output());
+                outputStates[number] = numbers[classes[output]];
+                outputRanks[number] = ranks[output];
+            }
+        }
+
+        // The keywords of every rank, in the order the states held them
+        int rankCount = keywordsBelow[0];
+        int[] rankStarts = new int[rankCount + 1];
+        int[] rankLengths = new int[rankCount];
+        for (int id = 0; id < count; id++) {
+            State<T> state = states.get(id);
+            if (!state.emits().isEmpty()) {
+                rankStarts[ranks[id] + 1] = state.emits().size();
+                rankLengths[ranks[id]] = state.getDepth();
+            }
+        }
+        for (int rank = 0; rank < rankCount; rank++) {
+            rankStarts[rank + 1] += rankStarts[rank];
+        }
+        int[] rankKeywordIds = new int[rankStarts[rankCount]];
+        for (int id = 0; id < count; id++) {
+            int i = rankStarts[ranks[id]];
+            for (StringPayload<T> emit : states.get(id).emits()) {
+                rankKeywordIds[i++] = emit.keywordId;
+            }
+        }
+
+        int[] keywordDictionaries = new int[keywords.size()];
+        for (StringPayload<T> keyword : keywords) {
+            keywordDictionaries[keyword.keywordId] = keyword.dictionary;
+        }
+
+        return new MinimizedAutomaton(stateCount, transitionStarts,
+                transitionCharacters, transitionTargets, transitionWeights,
+                failures, failureRanks, accepting, outputStates, outputRanks,
+                rankStarts, rankKeywordIds, rankLengths, keywordDictionaries);
+    }
+
+    private static final class Signature {
+
+        private final int[] values;
+
+        private final int hash;
+
+        Signature(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Signature
+                    && Arrays.equals(this.values, ((Signature) other).values);
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.ahocorasick.trie;
+
+import java.util.ArrayList;
+
+/**
+ * The emits or tokens of a parse, flagged when the parse stopped early
+ * because it hit one of the limits of the trie configuration or was
+ * cancelled. The list then holds what was found until then.
+ */
+@SuppressWarnings("serial")
+public class ParseResult<E> extends ArrayList<E> {
+
+    private final boolean truncated;
+
+    ParseResult(int initialCapacity, boolean truncated) {
+        super(initialCapacity);
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return true if the parse stopped before the end of the text, so that
+     *         matches further on may be missing
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+}
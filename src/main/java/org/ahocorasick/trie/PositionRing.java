@@ -0,0 +1,46 @@
+package org.ahocorasick.trie;
+
+/**
+ * Remembers the positions in the original text of the last normalized
+ * characters, as many as the longest keyword has, so that the start of a
+ * match found in the normalized text can be mapped back to the original.
+ */
+final class PositionRing {
+
+    private final int[] positions;
+
+    private final int mask;
+
+    private int count = 0;
+
+    PositionRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.positions = new int[size];
+        this.mask = size - 1;
+    }
+
+    void add(int position) {
+        this.positions[this.count++ & this.mask] = position;
+    }
+
+    /**
+     * @param back 1 for the last character added, 2 for the one before, up to
+     *            the capacity
+     * @return the position of that character in the original text
+     */
+    int get(int back) {
+        return this.positions[(this.count - back) & this.mask];
+    }
+
+    int capacity() {
+        return this.positions.length;
+    }
+
+    void clear() {
+        this.count = 0;
+    }
+
+}
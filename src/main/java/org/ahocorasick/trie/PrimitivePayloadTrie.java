@@ -0,0 +1,127 @@
+package org.ahocorasick.trie;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The part of {@link IntPayloadTrie} and {@link LongPayloadTrie} that does
+ * not depend on the type of the payload: the configuration methods, which
+ * return the subclass so that they chain, and the keyword ids the payload
+ * arrays are indexed by. Keywords are only added with a primitive payload;
+ * the inherited methods that take a payload object are not supported.
+ */
+@SuppressWarnings("serial")
+abstract class PrimitivePayloadTrie<S extends PrimitivePayloadTrie<S>>
+        extends Trie<Void> {
+
+    PrimitivePayloadTrie(TrieConfig trieConfig) {
+        super(trieConfig);
+    }
+
+    @SuppressWarnings("unchecked")
+    private S self() {
+        return (S) this;
+    }
+
+    @Override
+    public S caseInsensitive() {
+        super.caseInsensitive();
+        return self();
+    }
+
+    @Override
+    public S removeOverlaps() {
+        super.removeOverlaps();
+        return self();
+    }
+
+    @Override
+    public S onlyWholeWords() {
+        super.onlyWholeWords();
+        return self();
+    }
+
+    @Override
+    public S limitEmits(int maximumEmits) {
+        super.limitEmits(maximumEmits);
+        return self();
+    }
+
+    @Override
+    public S limitTextLength(int maximumTextLength) {
+        super.limitTextLength(maximumTextLength);
+        return self();
+    }
+
+    @Override
+    public S timeout(long timeout, TimeUnit unit) {
+        super.timeout(timeout, unit);
+        return self();
+    }
+
+    @Override
+    public S normalizeCharacters(CharNormalizer charNormalizer) {
+        super.normalizeCharacters(charNormalizer);
+        return self();
+    }
+
+    @Override
+    public S cacheTransitions(int capacity) {
+        super.cacheTransitions(capacity);
+        return self();
+    }
+
+    @Override
+    public S countHits() {
+        super.countHits();
+        return self();
+    }
+
+    @Override
+    public S build() {
+        super.build();
+        return self();
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; add the keyword with a
+     *             primitive payload instead
+     */
+    @Override
+    public int addKeyword(String keyword, Void payload) {
+        throw new UnsupportedOperationException("Add keywords with a primitive payload");
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; add the keyword with a
+     *             primitive payload instead
+     */
+    @Override
+    public int addKeyword(String keyword, Void payload, int dictionary) {
+        throw new UnsupportedOperationException("Add keywords with a primitive payload");
+    }
+
+    /**
+     * Adds the keyword without a payload object.
+     *
+     * @return the id of the keyword, or -1 if it was empty
+     */
+    int addKeywordId(String keyword, int dictionary) {
+        return super.addKeyword(keyword, null, dictionary);
+    }
+
+    /**
+     * @return the length to grow a payload array of the length to so that it
+     *         holds the keyword id
+     */
+    static int grow(int keywordId, int length) {
+        return Math.max(keywordId + 1, length * 2);
+    }
+
+    void checkKeywordId(int keywordId) {
+        if (keywordId < 0 || keywordId >= getKeywordCount()) {
+            throw new IndexOutOfBoundsException("No keyword with id "
+                    + keywordId);
+        }
+    }
+
+}
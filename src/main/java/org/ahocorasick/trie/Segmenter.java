@@ -0,0 +1,163 @@
+package org.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Splits a text without spaces, such as Chinese or Japanese, into the words
+ * of the dictionary of a trie. All matches of the keywords in the text form a
+ * lattice, in which every path from the start to the end of the text is a
+ * segmentation: a sequence of keywords and of single characters that no
+ * keyword covers. The segmenter picks the best path in a single pass over the
+ * text, in time linear in the length of the text and the number of matches. It
+ * scores every keyword with a weigher and prefers, among paths with equal
+ * scores, the one with the fewest segments.
+ * </p>
+ *
+ * <p>
+ * The matches are taken from a {@link Matcher}, so case insensitivity, whole
+ * word matching and normalization apply; overlap removal does not, as the
+ * segmenter resolves overlaps itself. A segmenter is thread safe.
+ * </p>
+ */
+public class Segmenter<T> {
+
+    /** scores a keyword as a segment; higher scores are preferred */
+    public interface Weigher<T> {
+
+        double weigh(String keyword, T payload);
+
+    }
+
+    private final Trie<T> trie;
+
+    private final Weigher<T> weigher;
+
+    public Segmenter(Trie<T> trie, Weigher<T> weigher) {
+        this.trie = trie;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Creates a segmenter that covers as many characters as possible with
+     * keywords, and then uses as few segments as possible.
+     */
+    public static <T> Segmenter<T> maximumMatching(Trie<T> trie) {
+        return new Segmenter<T>(trie, new Weigher<T>() {
+
+            @Override
+            public double weigh(String keyword, T payload) {
+                return keyword.length();
+            }
+
+        });
+    }
+
+    /**
+     * Creates a segmenter that splits the text into as few segments as
+     * possible, counting every character that no keyword covers as a segment.
+     */
+    public static <T> Segmenter<T> minimumSegments(Trie<T> trie) {
+        return new Segmenter<T>(trie, new Weigher<T>() {
+
+            @Override
+            public double weigh(String keyword, T payload) {
+                return 0;
+            }
+
+        });
+    }
+
+    /**
+     * Segments the text. The tokens cover the whole text in order; the
+     * characters between keywords are merged into fragment tokens.
+     */
+    public List<Token> segment(String text) {
+        int length = text.length();
+        if (length == 0) {
+            return Collections.emptyList();
+        }
+
+        // the best segmentation of the first i characters ends with the
+        // segment from starts[i] to i, which is keyword keywordIds[i], or a
+        // single character if that is -1
+        double[] scores = new double[length + 1];
+        int[] segments = new int[length + 1];
+        int[] starts = new int[length + 1];
+        int[] keywordIds = new int[length + 1];
+        Arrays.fill(scores, Double.NEGATIVE_INFINITY);
+        scores[0] = 0;
+
+        // Matches come in the order they end in. Before relaxing a match
+        // ending at some position, every character edge up to that position
+        // is relaxed, so the score at the start of the match is final.
+        int relaxed = 0;
+        Matcher<T> matcher = this.trie.matcher(text);
+        while (matcher.find()) {
+            int end = matcher.getEnd() + 1;
+            for (; relaxed < end; relaxed++) {
+                relax(scores, segments, starts, keywordIds, relaxed,
+                        relaxed + 1, 0, -1);
+            }
+            int keywordId = matcher.getKeywordId();
+            relax(scores, segments, starts, keywordIds, matcher.getStart(),
+                    end, this.weigher.weigh(matcher.getKeyword(),
+                            matcher.getPayload()), keywordId);
+        }
+        for (; relaxed < length; relaxed++) {
+            relax(scores, segments, starts, keywordIds, relaxed, relaxed + 1,
+                    0, -1);
+        }
+
+        List<Token> tokens = new ArrayList<Token>(segments[length]);
+        int fragmentEnd = -1;
+        for (int end = length; end > 0; end = starts[end]) {
+            int keywordId = keywordIds[end];
+            if (keywordId < 0) {
+                if (fragmentEnd < 0) {
+                    fragmentEnd = end;
+                }
+                continue;
+            }
+            if (fragmentEnd >= 0) {
+                tokens.add(new FragmentToken(text.substring(end, fragmentEnd)));
+                fragmentEnd = -1;
+            }
+            int start = starts[end];
+            tokens.add(new MatchToken(text.substring(start, end), new Emit<T>(
+                    start, end - 1, this.trie.getKeyword(keywordId),
+                    this.trie.getKeywordPayload(keywordId),
+                    this.trie.getKeywordDictionary(keywordId), keywordId)));
+        }
+        if (fragmentEnd >= 0) {
+            tokens.add(new FragmentToken(text.substring(0, fragmentEnd)));
+        }
+        Collections.reverse(tokens);
+        return tokens;
+    }
+
+    /**
+     * Takes the segment from the given positions as the last of the best
+     * segmentation up to its end, if it scores higher, or equally with fewer
+     * segments. On a complete tie a keyword wins from a single character.
+     */
+    private static void relax(double[] scores, int[] segments, int[] starts,
+            int[] keywordIds, int from, int to, double weight, int keywordId) {
+        double score = scores[from] + weight;
+        int count = segments[from] + 1;
+        boolean better = score > scores[to]
+                || (score == scores[to] && count < segments[to])
+                || (score == scores[to] && count == segments[to]
+                        && keywordId >= 0 && keywordIds[to] < 0);
+        if (better) {
+            scores[to] = score;
+            segments[to] = count;
+            starts[to] = from;
+            keywordIds[to] = keywordId;
+        }
+    }
+
+}
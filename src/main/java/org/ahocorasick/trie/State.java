@@ -58,14 +58,26 @@ public class State<T> implements Serializable {
      */
     private List<StringPayload<T>> emits = null;
 
+    /**
+     * the nearest state on the failure chain that has emits of its own. Its
+     * emits, and those of its own output state, are emitted as well whenever
+     * this state is reached. Sharing the chain keeps every keyword in exactly
+     * one emit list, instead of copying it into every state that inherits it.
+     */
+    private State<T> output = null;
+
     static class StringPayload<T> implements Serializable {
 
         final String keyword;
         final T payload;
+        final int dictionary;
+        final int keywordId;
 
-        StringPayload(String keyword, T payload) {
+        StringPayload(String keyword, T payload, int dictionary, int keywordId) {
             this.keyword = keyword;
             this.payload = payload;
+            this.dictionary = dictionary;
+            this.keywordId = keywordId;
         }
 
     }
@@ -109,7 +121,7 @@ public class State<T> implements Serializable {
     }
 
     public void addEmit(String keyword, T payload) {
-        addEmit(new StringPayload<T>(keyword, payload));
+        addEmit(new StringPayload<T>(keyword, payload, 0, 0));
     }
 
     public void addEmit(StringPayload<T> sp) {
@@ -125,11 +137,19 @@ public class State<T> implements Serializable {
         }
     }
 
-    public Collection<StringPayload<T>> emits() {
+    public List<StringPayload<T>> emits() {
         return this.emits == null ? Collections.<StringPayload<T>> emptyList()
                 : this.emits;
     }
 
+    public State<T> output() {
+        return this.output;
+    }
+
+    public void setOutput(State<T> outputState) {
+        this.output = outputState;
+    }
+
     public State<T> failure() {
         return this.failure;
     }
@@ -0,0 +1,58 @@
+package org.ahocorasick.trie;
+
+import java.io.Serializable;
+
+import org.ahocorasick.interval.Interval;
+
+/**
+ * A phrase found by a {@link TokenTrie}. As an interval it spans the
+ * characters of the phrase in the text; the tokens it spans are reported
+ * separately.
+ */
+@SuppressWarnings("serial")
+public class TokenEmit<T> extends Interval implements Serializable {
+
+    private final int tokenStart;
+    private final int tokenEnd;
+    private final int phraseId;
+    private final T payload;
+
+    public TokenEmit(final int tokenStart, final int tokenEnd,
+            final int start, final int end, final int phraseId,
+            final T payload) {
+        super(start, end);
+        this.tokenStart = tokenStart;
+        this.tokenEnd = tokenEnd;
+        this.phraseId = phraseId;
+        this.payload = payload;
+    }
+
+    /**
+     * @return the index of the first token of the phrase
+     */
+    public int getTokenStart() {
+        return this.tokenStart;
+    }
+
+    /**
+     * @return the index of the last token of the phrase
+     */
+    public int getTokenEnd() {
+        return this.tokenEnd;
+    }
+
+    public int getPhraseId() {
+        return this.phraseId;
+    }
+
+    public T getPayload() {
+        return this.payload;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "=" + this.tokenStart + ".."
+                + this.tokenEnd + "#" + this.phraseId;
+    }
+
+}
@@ -0,0 +1,305 @@
+package org.ahocorasick.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * An Aho-Corasick automaton over token ids instead of characters, to match
+ * phrases in a text that has already been split into tokens. Every state
+ * stands for a sequence of whole tokens, so a phrase costs one state per word
+ * instead of one per character, a text one step per word, and matches can
+ * never start or end inside a word.
+ * </p>
+ *
+ * <p>
+ * The automaton is held in int arrays: the transitions in one open addressing
+ * table keyed on state and token, the failure and output links and the
+ * phrases in arrays indexed by state. Matches are reported in token offsets,
+ * and also in character offsets if the caller passes the character span of
+ * every token.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class TokenTrie<T> implements Serializable {
+
+    private static final int ROOT = 0;
+
+    private static final long EMPTY = -1L;
+
+    private boolean allowOverlaps = true;
+
+    private volatile boolean failureStatesConstructed = false;
+
+    /** the transitions, keyed on the state in the high half, token in the low */
+    private long[] transitionKeys;
+    private int[] transitionTargets;
+    private int transitionCount = 0;
+
+    private int stateCount = 1;
+    /** the token that leads to every state */
+    private int[] stateTokens = new int[16];
+    private int[] failures = new int[16];
+    /** the nearest state on the failure chain with phrases of its own, or -1 */
+    private int[] outputs = new int[16];
+    /** the first phrase that ends in every state, or -1 */
+    private int[] firstPhrases = new int[16];
+    /** the children of every state, as a list of siblings */
+    private int[] firstChildren = new int[16];
+    private int[] nextSiblings = new int[16];
+
+    /** the phrases, by phrase id */
+    private int[] phraseLengths = new int[16];
+    private int[] nextPhrases = new int[16];
+    private final List<T> payloads = new ArrayList<T>();
+
+    public TokenTrie() {
+        this.transitionKeys = new long[32];
+        Arrays.fill(this.transitionKeys, EMPTY);
+        this.transitionTargets = new int[32];
+        this.firstPhrases[ROOT] = -1;
+        this.firstChildren[ROOT] = -1;
+    }
+
+    public TokenTrie<T> removeOverlaps() {
+        this.allowOverlaps = false;
+        return this;
+    }
+
+    /**
+     * Adds a phrase, given as the ids of its tokens.
+     *
+     * @return the id of the phrase, or -1 if it has no tokens. Ids are handed
+     *         out in the order phrases are added, starting at 0.
+     */
+    public int addPhrase(int[] tokens, T payload) {
+        if (tokens.length == 0) {
+            return -1;
+        }
+        int state = ROOT;
+        for (int token : tokens) {
+            int next = getTransition(state, token);
+            if (next < 0) {
+                next = addState(state, token);
+            }
+            state = next;
+        }
+        int phrase = this.payloads.size();
+        if (phrase == this.phraseLengths.length) {
+            this.phraseLengths = Arrays.copyOf(this.phraseLengths, phrase * 2);
+            this.nextPhrases = Arrays.copyOf(this.nextPhrases, phrase * 2);
+        }
+        this.phraseLengths[phrase] = tokens.length;
+        this.nextPhrases[phrase] = this.firstPhrases[state];
+        this.firstPhrases[state] = phrase;
+        this.payloads.add(payload);
+        this.failureStatesConstructed = false;
+        return phrase;
+    }
+
+    public int getPhraseCount() {
+        return this.payloads.size();
+    }
+
+    public int getStateCount() {
+        return this.stateCount;
+    }
+
+    public T getPayload(int phraseId) {
+        return this.payloads.get(phraseId);
+    }
+
+    /**
+     * @return the number of tokens in the phrase
+     */
+    public int getPhraseLength(int phraseId) {
+        return this.phraseLengths[phraseId];
+    }
+
+    /**
+     * Finds the phrases in the first tokens of the sequence, replacing the
+     * contents of the buffer. The starts and ends of the matches are token
+     * indexes, both inclusive; their keyword ids are phrase ids.
+     *
+     * @param tokens the token ids of the text
+     * @param count the number of tokens to scan
+     * @param buffer the buffer to fill
+     * @return the buffer that was passed in
+     */
+    public MatchBuffer parseTokens(int[] tokens, int count, MatchBuffer buffer) {
+        checkForConstructedFailureStates();
+        buffer.clear();
+        int state = ROOT;
+        for (int position = 0; position < count; position++) {
+            int token = tokens[position];
+            int next = getTransition(state, token);
+            while (next < 0 && state != ROOT) {
+                state = this.failures[state];
+                next = getTransition(state, token);
+            }
+            state = next < 0 ? ROOT : next;
+            int output = this.firstPhrases[state] >= 0 ? state
+                    : this.outputs[state];
+            while (output >= 0) {
+                int phrase = this.firstPhrases[output];
+                while (phrase >= 0) {
+                    buffer.add(position - this.phraseLengths[phrase] + 1,
+                            position, phrase);
+                    phrase = this.nextPhrases[phrase];
+                }
+                output = this.outputs[output];
+            }
+        }
+        if (!this.allowOverlaps) {
+            buffer.removeOverlaps();
+        }
+        return buffer;
+    }
+
+    /**
+     * Finds the phrases in the sequence of tokens and reports them in token
+     * and character offsets.
+     *
+     * @param tokens the token ids of the text
+     * @param characterStarts the position of the first character of every
+     *            token in the text
+     * @param characterEnds the position of the last character of every token
+     *            in the text
+     */
+    public List<TokenEmit<T>> parseTokens(int[] tokens, int[] characterStarts,
+            int[] characterEnds) {
+        MatchBuffer buffer = parseTokens(tokens, tokens.length,
+                new MatchBuffer());
+        List<TokenEmit<T>> emits = new ArrayList<TokenEmit<T>>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            int tokenStart = buffer.getStart(i);
+            int tokenEnd = buffer.getEnd(i);
+            int phrase = buffer.getKeywordId(i);
+            emits.add(new TokenEmit<T>(tokenStart, tokenEnd,
+                    characterStarts[tokenStart], characterEnds[tokenEnd],
+                    phrase, this.payloads.get(phrase)));
+        }
+        return emits;
+    }
+
+    private int addState(int parent, int token) {
+        int state = this.stateCount++;
+        if (state == this.stateTokens.length) {
+            int capacity = state * 2;
+            this.stateTokens = Arrays.copyOf(this.stateTokens, capacity);
+            this.failures = Arrays.copyOf(this.failures, capacity);
+            this.outputs = Arrays.copyOf(this.outputs, capacity);
+            this.firstPhrases = Arrays.copyOf(this.firstPhrases, capacity);
+            this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+            this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+        }
+        this.stateTokens[state] = token;
+        this.firstPhrases[state] = -1;
+        this.firstChildren[state] = -1;
+        this.nextSiblings[state] = this.firstChildren[parent];
+        this.firstChildren[parent] = state;
+        putTransition(parent, token, state);
+        return state;
+    }
+
+    private int getTransition(int state, int token) {
+        long key = key(state, token);
+        int mask = this.transitionKeys.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            long found = this.transitionKeys[slot];
+            if (found == key) {
+                return this.transitionTargets[slot];
+            }
+            if (found == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void putTransition(int state, int token, int target) {
+        if (2 * (this.transitionCount + 1) > this.transitionKeys.length) {
+            long[] keys = this.transitionKeys;
+            int[] targets = this.transitionTargets;
+            this.transitionKeys = new long[keys.length * 2];
+            Arrays.fill(this.transitionKeys, EMPTY);
+            this.transitionTargets = new int[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    insert(keys[i], targets[i]);
+                }
+            }
+        }
+        insert(key(state, token), target);
+        this.transitionCount++;
+    }
+
+    private void insert(long key, int target) {
+        int mask = this.transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.transitionKeys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        this.transitionKeys[slot] = key;
+        this.transitionTargets[slot] = target;
+    }
+
+    private static long key(int state, int token) {
+        return ((long) state << 32) | (token & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Constructs the failure states on first use. Once they are constructed
+     * the trie is only read, so it can be parsed by many threads at once.
+     */
+    private void checkForConstructedFailureStates() {
+        if (!this.failureStatesConstructed) {
+            synchronized (this) {
+                if (!this.failureStatesConstructed) {
+                    constructFailureStates();
+                    this.failureStatesConstructed = true;
+                }
+            }
+        }
+    }
+
+    private void constructFailureStates() {
+        int[] queue = new int[this.stateCount];
+        int head = 0;
+        int tail = 0;
+        this.failures[ROOT] = ROOT;
+        this.outputs[ROOT] = -1;
+        int child = this.firstChildren[ROOT];
+        while (child >= 0) {
+            this.failures[child] = ROOT;
+            this.outputs[child] = -1;
+            queue[tail++] = child;
+            child = this.nextSiblings[child];
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (child = this.firstChildren[state]; child >= 0;
+                    child = this.nextSiblings[child]) {
+                queue[tail++] = child;
+                int token = this.stateTokens[child];
+                int failure = this.failures[state];
+                int next = getTransition(failure, token);
+                while (next < 0 && failure != ROOT) {
+                    failure = this.failures[failure];
+                    next = getTransition(failure, token);
+                }
+                failure = next < 0 ? ROOT : next;
+                this.failures[child] = failure;
+                this.outputs[child] = this.firstPhrases[failure] >= 0 ? failure
+                        : this.outputs[failure];
+            }
+        }
+    }
+
+}
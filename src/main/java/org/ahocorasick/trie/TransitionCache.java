@@ -0,0 +1,121 @@
+package org.ahocorasick.trie;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * <p>
+ * Remembers the resolved transitions of the automaton, so that a transition
+ * that needs a walk along the failure states only walks the first time it is
+ * taken. Transitions are held in a direct mapped table of fixed size: a
+ * transition that hashes to an occupied slot replaces the one in it, so the
+ * cache never grows and keeps the transitions the text actually uses.
+ * </p>
+ *
+ * <p>
+ * The slots hold immutable entries, whose fields are final, so the memory
+ * model guarantees that a reader sees them fully constructed even though the
+ * slots are written without locking. A reader that races with a writer sees
+ * either the old or the new entry, and both are correct transitions; at
+ * worst the transition is resolved again. The table itself is volatile, so
+ * the empty table that {@link #clear()} swaps in is seen by all threads. Every
+ * miss allocates one small entry, which the next transition hashing to the
+ * same slot turns into garbage.
+ * </p>
+ */
+@SuppressWarnings("serial")
+class TransitionCache<T> implements Serializable {
+
+    private static class Entry<T> {
+
+        final State<T> from;
+        final char character;
+        final State<T> to;
+
+        Entry(State<T> from, char character, State<T> to) {
+            this.from = from;
+            this.character = character;
+            this.to = to;
+        }
+
+    }
+
+    private final int mask;
+
+    /** the entries are not serialized; a deserialized cache starts empty */
+    private transient volatile Entry<T>[] entries;
+
+    /**
+     * @param capacity the number of transitions to hold, rounded up to a power
+     *            of two
+     */
+    TransitionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: "
+                    + capacity);
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if (size < capacity && size < 1 << 30) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.entries = newEntries(this.mask + 1);
+    }
+
+    int capacity() {
+        return this.entries.length;
+    }
+
+    /**
+     * @return the number of transitions held at this moment
+     */
+    int size() {
+        int size = 0;
+        for (Entry<T> entry : this.entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the cached target of the transition, or null if it is not
+     *         cached
+     */
+    State<T> get(State<T> from, char character) {
+        Entry<T> entry = this.entries[index(from, character)];
+        if (entry != null && entry.from == from
+                && entry.character == character) {
+            return entry.to;
+        }
+        return null;
+    }
+
+    void put(State<T> from, char character, State<T> to) {
+        Entry<T>[] entries = this.entries;
+        entries[index(from, character)] = new Entry<T>(from, character, to);
+    }
+
+    void clear() {
+        this.entries = newEntries(this.entries.length);
+    }
+
+    private int index(State<T> from, char character) {
+        int hash = System.identityHashCode(from) * 31 + character;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] newEntries(int capacity) {
+        return (Entry<T>[]) new Entry<?>[capacity];
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        this.entries = newEntries(this.mask + 1);
+    }
+
+}
@@ -1,31 +1,79 @@
 package org.ahocorasick.trie;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
-import org.ahocorasick.interval.IntervalTree;
-import org.ahocorasick.interval.Intervalable;
 import org.ahocorasick.trie.State.StringPayload;
 
 /**
  *
  * Based on the Aho-Corasick white paper, Bell technologies:
  * ftp://163.13.200.222/assistant/bearhero/prog/%A8%E4%A5%A6/ac_bm.pdf
+ *
+ * A trie is serialized as its configuration and its list of keywords, plus
+ * its compiled or minimized tables if it has them. The states are rebuilt
+ * from the keywords when it is read back, so the size of the dictionary does
+ * not bound the depth of the serialization.
  * 
  * @author Robert Bor
  */
 @SuppressWarnings("serial")
 public class Trie<T> implements Serializable {
 
+    /** number of characters between checks for cancellation and timeout */
+    private static final int CHECK_INTERVAL = 4096;
+
+    /** the largest transition table, in cells, that {@link #compile()} builds */
+    public static final int DEFAULT_MAXIMUM_COMPILED_SIZE = 1 << 18;
+
     private TrieConfig trieConfig;
 
-    private State<T> rootState;
+    private transient State<T> rootState;
+
+    private transient volatile boolean failureStatesConstructed = false;
+
+    /** the outputs of all keywords, indexed by keyword id */
+    private List<StringPayload<T>> keywords = new ArrayList<StringPayload<T>>();
+
+    /**
+     * bitmap of all characters that have a transition from the root state.
+     * While the automaton is in the root state every other character leads
+     * back to the root state, so it can be skipped without a lookup.
+     */
+    private transient long[] startCharacters;
+
+    /** the length of the longest keyword, after normalization */
+    private int maximumKeywordLength = 0;
 
-    private boolean failureStatesConstructed = false;
+    /** the compiled form of the automaton, if it was compiled */
+    private volatile CompiledAutomaton compiled;
+
+    /**
+     * the minimized form of the automaton, if it was minimized; the states
+     * are released then
+     */
+    private volatile MinimizedAutomaton minimized;
+
+    /** the resolved transitions taken so far, if they are cached */
+    private TransitionCache<T> transitionCache;
+
+    /**
+     * changes whenever a keyword is added or an option is changed, so that
+     * cached results can tell whether they are still valid
+     */
+    private transient volatile int version = 0;
+
+    /** counts the matches of every keyword, if enabled */
+    private transient volatile KeywordHitCounter hitCounter;
 
     public Trie(TrieConfig trieConfig) {
         this.trieConfig = trieConfig;
@@ -38,35 +86,449 @@ public class Trie<T> implements Serializable {
 
     public Trie<T> caseInsensitive() {
         this.trieConfig.setCaseInsensitive(true);
+        this.version++;
         return this;
     }
 
     public Trie<T> removeOverlaps() {
         this.trieConfig.setAllowOverlaps(false);
+        this.version++;
         return this;
     }
 
     public Trie<T> onlyWholeWords() {
         this.trieConfig.setOnlyWholeWords(true);
+        this.version++;
         return this;
     }
 
-    public void addKeyword(String keyword, T payload) {
-        if (keyword == null || keyword.length() == 0) {
-            return;
+    public Trie<T> limitEmits(int maximumEmits) {
+        this.trieConfig.setMaximumEmits(maximumEmits);
+        this.version++;
+        return this;
+    }
+
+    public Trie<T> limitTextLength(int maximumTextLength) {
+        this.trieConfig.setMaximumTextLength(maximumTextLength);
+        this.version++;
+        return this;
+    }
+
+    public Trie<T> timeout(long timeout, TimeUnit unit) {
+        this.trieConfig.setTimeoutNanos(unit.toNanos(timeout));
+        this.version++;
+        return this;
+    }
+
+    /**
+     * Matches the keywords and the text after normalizing their characters,
+     * while emits keep reporting positions in the original text. Set the
+     * normalizer before adding keywords.
+     *
+     * @see CharNormalizers
+     */
+    public Trie<T> normalizeCharacters(CharNormalizer charNormalizer) {
+        this.trieConfig.setCharNormalizer(charNormalizer);
+        this.version++;
+        return this;
+    }
+
+    /**
+     * Caches the resolved transitions of the automaton as they are taken, so
+     * that the walk along the failure states behind a transition is only made
+     * once. This gives close to the speed of a full transition table on the
+     * transitions the text actually uses, while memory stays bounded: the
+     * cache holds a fixed number of transitions, and a new transition replaces
+     * an old one that hashes to the same slot. Configure the cache before the
+     * trie is shared between threads; after that it is safe for any number of
+     * concurrent parses.
+     *
+     * @param capacity the number of transitions to cache, rounded up to a
+     *            power of two
+     */
+    public Trie<T> cacheTransitions(int capacity) {
+        this.transitionCache = new TransitionCache<T>(capacity);
+        return this;
+    }
+
+    /**
+     * Empties the transition cache, if there is one.
+     */
+    public void clearTransitionCache() {
+        if (this.transitionCache != null) {
+            this.transitionCache.clear();
+        }
+    }
+
+    /**
+     * Counts the matches of every keyword reported by parseText, tokenize and
+     * the matchers from now on. Enable it after adding the keywords; keywords
+     * added later are not counted. Counting is cheap enough to leave on in
+     * production.
+     *
+     * @see #getHitCounter()
+     */
+    public Trie<T> countHits() {
+        this.hitCounter = new KeywordHitCounter(this.keywords.size());
+        return this;
+    }
+
+    /**
+     * @return the counter of the matches of every keyword, or null if hits
+     *         are not counted
+     */
+    public KeywordHitCounter getHitCounter() {
+        return this.hitCounter;
+    }
+
+    public int addKeyword(String keyword, T payload) {
+        return addKeyword(keyword, payload, 0);
+    }
+
+    /**
+     * Adds a keyword to one of the dictionaries held by this trie. All
+     * dictionaries share the same states, so a keyword present in several
+     * dictionaries is only stored once; every dictionary gets its own output
+     * on the final state.
+     *
+     * @param keyword the keyword to match
+     * @param payload the payload to report with every match of the keyword
+     * @param dictionary the non-negative id of the dictionary the keyword
+     *            belongs to
+     * @return the id of the keyword, or -1 if the keyword was empty. Ids are
+     *         handed out in the order keywords are added, starting at 0.
+     */
+    public int addKeyword(String keyword, T payload, int dictionary) {
+        if (dictionary < 0) {
+            throw new IllegalArgumentException("Dictionary id must not be negative: " + dictionary);
+        }
+        if (this.minimized != null) {
+            throw new IllegalStateException("Keywords cannot be added to a minimized trie");
+        }
+        if (keyword == null) {
+            return -1;
+        }
+        String characters = normalize(keyword);
+        if (characters.length() == 0) {
+            return -1;
         }
         State<T> currentState = this.rootState;
-        for (Character character : keyword.toCharArray()) {
+        for (Character character : characters.toCharArray()) {
             currentState = currentState.addState(character);
         }
-        currentState.addEmit(keyword, payload);
+        this.maximumKeywordLength = Math.max(this.maximumKeywordLength,
+                characters.length());
+        this.compiled = null;
+        clearTransitionCache();
+        StringPayload<T> output = new StringPayload<T>(keyword, payload,
+                dictionary, this.keywords.size());
+        this.keywords.add(output);
+        currentState.addEmit(output);
+        this.failureStatesConstructed = false;
+        this.version++;
+        return output.keywordId;
+    }
+
+    private String normalize(String keyword) {
+        CharNormalizer normalizer = this.trieConfig.getCharNormalizer();
+        if (normalizer == null) {
+            return keyword;
+        }
+        StringBuilder normalized = new StringBuilder(keyword.length());
+        int previous = CharNormalizer.NONE;
+        for (int i = 0; i < keyword.length(); i++) {
+            int character = normalizer.normalize(keyword.charAt(i), previous);
+            if (character != CharNormalizer.IGNORE) {
+                normalized.append((char) character);
+                previous = character;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Constructs the failure states now instead of on the first parse. Call
+     * this before publishing a freshly built trie, so the first request does
+     * not pay for the construction.
+     */
+    public Trie<T> build() {
+        checkForConstructedFailureStates();
+        return this;
+    }
+
+    /**
+     * Compiles the automaton into flat transition tables, if they hold no more
+     * than {@link #DEFAULT_MAXIMUM_COMPILED_SIZE} cells.
+     *
+     * @see #compile(int)
+     */
+    public boolean compile() {
+        return compile(DEFAULT_MAXIMUM_COMPILED_SIZE);
+    }
+
+    /**
+     * Compiles the automaton into a flat table that holds the next state for
+     * every state and every character that occurs in a keyword, with all
+     * failure transitions resolved in advance. parseText, tokenize and the
+     * matchers use the table from then on, which replaces the map lookups and
+     * failure walks of the regular automaton by one array read per
+     * character. The table holds the number of states times the
+     * number of distinct keyword characters, so large dictionaries are left
+     * to the regular automaton. Adding a keyword discards the table. Tries
+     * that normalize characters or are minimized are not compiled.
+     *
+     * @param maximumTableSize the largest number of cells the table may hold
+     * @return true if the automaton was compiled, false if it is too large
+     */
+    public synchronized boolean compile(int maximumTableSize) {
+        checkForConstructedFailureStates();
+        if (this.trieConfig.getCharNormalizer() != null
+                || this.minimized != null) {
+            return false;
+        }
+        this.compiled = CompiledAutomaton.compile(this.rootState,
+                this.keywords, maximumTableSize);
+        return this.compiled != null;
+    }
+
+    /**
+     * Reorders the states of the compiled table on how often a scan of the
+     * sample texts enters them, so that the states real traffic keeps
+     * returning to sit next to each other in memory. Without this step the
+     * states are ordered breadth first. Pass a sample that represents the
+     * traffic; the order is kept until the trie is compiled again. The new
+     * order can only help once the table no longer fits the CPU caches; for
+     * small tables it makes no measurable difference.
+     *
+     * @return false if the trie is not compiled
+     */
+    public synchronized boolean optimizeLayout(
+            Iterable<? extends CharSequence> sample) {
+        CompiledAutomaton compiled = this.compiled;
+        if (compiled == null) {
+            return false;
+        }
+        long[] visits = new long[compiled.stateCount];
+        for (CharSequence text : sample) {
+            compiled.countVisits(text, trieConfig.isCaseInsensitive(), visits);
+        }
+        this.compiled = compiled.relayout(visits);
+        return true;
+    }
+
+    public boolean isCompiled() {
+        return this.compiled != null;
+    }
+
+    /**
+     * Merges the equivalent subtrees of the automaton, so that a suffix shared
+     * by many keywords, such as an inflection, is held once instead of once
+     * per keyword, and replaces the states with the merged automaton. Merged
+     * states lead to different keywords along different paths, so the scan
+     * adds up a weight per transition to tell them apart; see
+     * {@link MinimizedAutomaton}. The result matches exactly like the
+     * original. The states are released, so the trie takes less memory and
+     * fits caches better, but it is frozen: adding a keyword afterwards
+     * fails. A minimized trie is not compiled, and its transitions are not
+     * cached. Tries that normalize characters are not minimized.
+     *
+     * @return true if the automaton was minimized, false if the trie
+     *         normalizes characters
+     */
+    public synchronized boolean minimize() {
+        if (this.minimized != null) {
+            return true;
+        }
+        checkForConstructedFailureStates();
+        if (this.trieConfig.getCharNormalizer() != null) {
+            return false;
+        }
+        this.minimized = MinimizedAutomaton.minimize(this.rootState,
+                this.keywords);
+        this.compiled = null;
+        this.transitionCache = null;
+        this.rootState = null;
+        return true;
+    }
+
+    public boolean isMinimized() {
+        return this.minimized != null;
+    }
+
+    /**
+     * Reports the shape of the automaton and estimates the memory it retains,
+     * including its compiled form and transition cache. Constructs the
+     * failure states if they were not yet. Takes time linear in the number of
+     * states.
+     */
+    public TrieStatistics getStatistics() {
+        checkForConstructedFailureStates();
+        return new TrieStatistics(this.rootState, this.keywords,
+                this.startCharacters, this.compiled, this.transitionCache,
+                this.minimized);
+    }
+
+    /**
+     * @return the number of keywords added to this trie, which is also the
+     *         upper bound (exclusive) of the keyword ids
+     */
+    public int getKeywordCount() {
+        return this.keywords.size();
+    }
+
+    int getVersion() {
+        return this.version;
+    }
+
+    StringPayload<T> getOutput(int keywordId) {
+        return this.keywords.get(keywordId);
+    }
+
+    State<T> getRootState() {
+        return this.rootState;
+    }
+
+    CompiledAutomaton getCompiled() {
+        return this.compiled;
+    }
+
+    MinimizedAutomaton getMinimized() {
+        return this.minimized;
+    }
+
+    int getMaximumKeywordLength() {
+        return this.maximumKeywordLength;
+    }
+
+    public String getKeyword(int keywordId) {
+        return this.keywords.get(keywordId).keyword;
+    }
+
+    public T getKeywordPayload(int keywordId) {
+        return this.keywords.get(keywordId).payload;
+    }
+
+    public int getKeywordDictionary(int keywordId) {
+        return this.keywords.get(keywordId).dictionary;
+    }
+
+    /**
+     * Creates a matcher that finds the keywords in the text one by one. Keep
+     * the matcher and reset it to a new text to avoid any allocation per text.
+     */
+    public Matcher<T> matcher(CharSequence text) {
+        return matcher(text, null);
+    }
+
+    /**
+     * Creates a matcher that only finds the keywords of the selected
+     * dictionaries.
+     *
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     */
+    public Matcher<T> matcher(CharSequence text, BitSet dictionaries) {
+        checkForConstructedFailureStates();
+        return new Matcher<T>(this, this.trieConfig, dictionaries).reset(text);
+    }
+
+    /**
+     * Returns the matches in the text lazily: the text is only scanned as
+     * far as the iteration goes, so stopping after the first few matches
+     * saves scanning the rest. Matches come in the order of a
+     * {@link Matcher}, without overlap removal or parse limits.
+     */
+    public Iterable<Emit<T>> matches(final CharSequence text) {
+        return matches(text, null);
+    }
+
+    /**
+     * Returns the matches of the keywords of the selected dictionaries
+     * lazily.
+     *
+     * @see #matches(CharSequence)
+     */
+    public Iterable<Emit<T>> matches(final CharSequence text,
+            final BitSet dictionaries) {
+        return new Iterable<Emit<T>>() {
+
+            @Override
+            public Iterator<Emit<T>> iterator() {
+                return new MatchIterator<T>(matcher(text, dictionaries));
+            }
+
+        };
+    }
+
+    /**
+     * @return true if any keyword occurs in the text. The scan stops at the
+     *         first match.
+     */
+    public boolean containsAny(CharSequence text) {
+        return containsAny(text, null);
+    }
+
+    public boolean containsAny(CharSequence text, BitSet dictionaries) {
+        return matcher(text, dictionaries).find();
+    }
+
+    /**
+     * @return the match that ends first in the text, the longest if several
+     *         end at the same position, or null if there is none. The scan
+     *         stops at that match.
+     */
+    public Emit<T> firstMatch(CharSequence text) {
+        return firstMatch(text, null);
+    }
+
+    public Emit<T> firstMatch(CharSequence text, BitSet dictionaries) {
+        Matcher<T> matcher = matcher(text, dictionaries);
+        return matcher.find() ? matcher.toEmit() : null;
     }
 
     public Collection<Token> tokenize(String text) {
+        return tokenize(text, null);
+    }
+
+    /**
+     * Tokenizes the text, only taking into account the keywords of the
+     * selected dictionaries.
+     *
+     * @param text the text to tokenize
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     */
+    public Collection<Token> tokenize(String text, BitSet dictionaries) {
+        return tokenizeResult(text, dictionaries, null);
+    }
+
+    /**
+     * Tokenizes the text like {@link #tokenize(String)}, and tells whether
+     * the parse stopped early on one of the limits of the trie.
+     */
+    public ParseResult<Token> tokenizeResult(String text) {
+        return tokenizeResult(text, null, null);
+    }
 
-        Collection<Token> tokens = new ArrayList<Token>();
+    /**
+     * Tokenizes the text, stopping early when the parse hits a limit of the
+     * trie configuration, or when the cancellation token is cancelled or
+     * expires. If the parse stops early, the text after the last match found
+     * is returned as a single fragment and the tokens are flagged as
+     * truncated.
+     *
+     * @param text the text to tokenize
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     * @param cancellation checked periodically during the parse, may be null
+     */
+    public ParseResult<Token> tokenizeResult(String text,
+            BitSet dictionaries, CancellationToken cancellation) {
 
-        Collection<Emit<T>> collectedEmits = parseText(text);
+        ParseResult<Emit<T>> collectedEmits = parseResult(text, dictionaries,
+                cancellation);
+        ParseResult<Token> tokens = new ParseResult<Token>(
+                collectedEmits.size() * 2 + 1, collectedEmits.isTruncated());
         int lastCollectedPosition = -1;
         for (Emit<T> emit : collectedEmits) {
             if (emit.getStart() - lastCollectedPosition > 1) {
@@ -93,57 +555,326 @@ public class Trie<T> implements Serializable {
                 text.substring(emit.getStart(), emit.getEnd() + 1), emit);
     }
 
-    @SuppressWarnings("unchecked")
     public Collection<Emit<T>> parseText(String text) {
+        return parseText(text, (BitSet) null);
+    }
+
+    /**
+     * Parses the text in a single pass, only reporting the keywords of the
+     * selected dictionaries. Overlaps and partial matches are resolved among
+     * the reported keywords only.
+     *
+     * @param text the text to parse
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     */
+    public Collection<Emit<T>> parseText(String text, BitSet dictionaries) {
+        return parseResult(text, dictionaries, null);
+    }
+
+    /**
+     * Parses the text like {@link #parseText(String)}, and tells whether the
+     * parse stopped early on one of the limits of the trie.
+     */
+    public ParseResult<Emit<T>> parseResult(String text) {
+        return parseResult(text, null, null);
+    }
+
+    /**
+     * Parses the text, stopping early when it hits a limit of the trie
+     * configuration, or when the cancellation token is cancelled or expires.
+     * The emits found until then are returned, flagged as truncated.
+     *
+     * @param text the text to parse
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     * @param cancellation checked periodically during the parse, may be null
+     */
+    public ParseResult<Emit<T>> parseResult(String text,
+            BitSet dictionaries, CancellationToken cancellation) {
+        MatchBuffer buffer = parseText(text, dictionaries, new MatchBuffer(),
+                cancellation);
+        ParseResult<Emit<T>> collectedEmits = new ParseResult<Emit<T>>(
+                buffer.size(), buffer.isTruncated());
+        for (int i = 0; i < buffer.size(); i++) {
+            StringPayload<T> output = this.keywords.get(buffer
+                    .getKeywordId(i));
+            collectedEmits.add(new Emit<T>(buffer.getStart(i), buffer
+                    .getEnd(i), output.keyword, output.payload,
+                    output.dictionary, output.keywordId));
+        }
+        return collectedEmits;
+    }
+
+    public MatchBuffer parseText(String text, MatchBuffer buffer) {
+        return parseText(text, null, buffer);
+    }
+
+    public MatchBuffer parseText(String text, BitSet dictionaries,
+            MatchBuffer buffer) {
+        return parseText(text, dictionaries, buffer, null);
+    }
+
+    /**
+     * Parses the text into a buffer of matches, replacing its contents. Reuse
+     * the same buffer for every call to avoid allocating emits.
+     *
+     * The parse stops early when it hits a limit of the trie configuration, or
+     * when the cancellation token is cancelled or expires. The buffer then
+     * holds the matches found so far, with whole word and overlap filtering
+     * applied, and reports itself as truncated.
+     *
+     * @param text the text to parse
+     * @param dictionaries the ids of the dictionaries to report, or null to
+     *            report all dictionaries
+     * @param buffer the buffer to fill
+     * @param cancellation checked periodically during the parse, may be null
+     * @return the buffer that was passed in
+     */
+    public MatchBuffer parseText(String text, BitSet dictionaries,
+            MatchBuffer buffer, CancellationToken cancellation) {
         checkForConstructedFailureStates();
+        buffer.clear();
 
-        if (trieConfig.isCaseInsensitive()) {
-            text = text.toLowerCase();
+        int length = text.length();
+        if (length > trieConfig.getMaximumTextLength()) {
+            length = trieConfig.getMaximumTextLength();
+            buffer.truncate(0);
         }
+        long timeout = trieConfig.getTimeoutNanos();
+        long deadline = System.nanoTime() + timeout;
 
-        int position = 0;
-        State<T> currentState = this.rootState;
-        List<Emit<T>> collectedEmits = new ArrayList<Emit<T>>();
-        for (Character character : text.toCharArray()) {
-            currentState = getState(currentState, character);
-            storeEmits(position, currentState, collectedEmits);
-            position++;
+        MinimizedAutomaton minimized = this.minimized;
+        CompiledAutomaton compiled = this.compiled;
+        CharNormalizer normalizer = trieConfig.getCharNormalizer();
+        if (minimized != null) {
+            scan(minimized, text, length, dictionaries, buffer, cancellation,
+                    timeout, deadline);
+        } else if (normalizer != null) {
+            scan(normalizer, text, length, dictionaries, buffer, cancellation,
+                    timeout, deadline);
+        } else if (compiled != null) {
+            scan(compiled, text, length, dictionaries, buffer, cancellation,
+                    timeout, deadline);
+        } else {
+            scan(text, length, dictionaries, buffer, cancellation, timeout,
+                    deadline);
         }
 
         if (trieConfig.isOnlyWholeWords()) {
-            removePartialMatches(text, collectedEmits);
+            buffer.removePartialMatches(text);
         }
 
         if (!trieConfig.isAllowOverlaps()) {
-            IntervalTree intervalTree = new IntervalTree(
-                    (List<Intervalable>) (List<?>) collectedEmits);
-            intervalTree
-                    .removeOverlaps((List<Intervalable>) (List<?>) collectedEmits);
+            buffer.removeOverlaps();
         }
 
-        return collectedEmits;
+        KeywordHitCounter counter = this.hitCounter;
+        if (counter != null) {
+            counter.increment(buffer);
+        }
+        return buffer;
     }
 
-    private void removePartialMatches(String searchText,
-            List<Emit<T>> collectedEmits) {
-        long size = searchText.length();
-        List<Emit<T>> removeEmits = new ArrayList<Emit<T>>();
-        for (Emit<T> emit : collectedEmits) {
-            if ((emit.getStart() == 0 || !Character.isAlphabetic(searchText
-                    .charAt(emit.getStart() - 1)))
-                    && (emit.getEnd() + 1 == size || !Character
-                            .isAlphabetic(searchText.charAt(emit.getEnd() + 1)))) {
+    private void scan(String text, int length, BitSet dictionaries,
+            MatchBuffer buffer, CancellationToken cancellation, long timeout,
+            long deadline) {
+        int maximumEmits = trieConfig.getMaximumEmits();
+        int nextCheck = CHECK_INTERVAL;
+        boolean caseInsensitive = trieConfig.isCaseInsensitive();
+        State<T> currentState = this.rootState;
+        for (int position = 0; position < length; position++) {
+            if (currentState == this.rootState) {
+                position = skipToStartCharacter(text, position, length,
+                        caseInsensitive);
+                if (position == length) {
+                    break;
+                }
+            }
+            if (position >= nextCheck) {
+                if (isInterrupted(cancellation, timeout, deadline)) {
+                    buffer.truncate(buffer.size());
+                    break;
+                }
+                nextCheck = position + CHECK_INTERVAL;
+            }
+            char character = text.charAt(position);
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            currentState = getState(currentState, character);
+            storeEmits(position, currentState, dictionaries, buffer, null);
+            if (buffer.size() > maximumEmits) {
+                buffer.truncate(maximumEmits);
+                break;
+            }
+        }
+    }
+
+    /**
+     * The same scan as above, matching the normalized characters of the text.
+     * Characters the normalizer drops are skipped; the positions of the others
+     * are kept in a ring, to map the start of a match back to the original
+     * text. A match ends after the dropped characters that follow its last
+     * character, so that the combining accent of its last letter belongs to
+     * it rather than to the text after it.
+     */
+    private void scan(CharNormalizer normalizer, String text, int length,
+            BitSet dictionaries, MatchBuffer buffer,
+            CancellationToken cancellation, long timeout, long deadline) {
+        int maximumEmits = trieConfig.getMaximumEmits();
+        int nextCheck = CHECK_INTERVAL;
+        boolean caseInsensitive = trieConfig.isCaseInsensitive();
+        PositionRing positions = new PositionRing(this.maximumKeywordLength);
+        long[] bitmap = this.startCharacters;
+        int previous = CharNormalizer.NONE;
+        State<T> currentState = this.rootState;
+        for (int position = 0; position < length; position++) {
+            if (position >= nextCheck) {
+                if (isInterrupted(cancellation, timeout, deadline)) {
+                    buffer.truncate(buffer.size());
+                    break;
+                }
+                nextCheck = position + CHECK_INTERVAL;
+            }
+            int normalized = normalizer.normalize(text.charAt(position),
+                    previous);
+            if (normalized == CharNormalizer.IGNORE) {
                 continue;
             }
-            removeEmits.add(emit);
+            previous = normalized;
+            char character = (char) normalized;
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            positions.add(position);
+            if (currentState == this.rootState
+                    && (bitmap[character >>> 6] & (1L << character)) == 0) {
+                continue;
+            }
+            currentState = getState(currentState, character);
+            if (currentState.emits().isEmpty()
+                    && currentState.output() == null) {
+                continue;
+            }
+            storeEmits(extendOverIgnored(normalizer, text, position, length,
+                    previous), currentState, dictionaries, buffer, positions);
+            if (buffer.size() > maximumEmits) {
+                buffer.truncate(maximumEmits);
+                break;
+            }
+        }
+    }
+
+    /**
+     * The same scan as above, running on the compiled tables. State 0 is the
+     * root state.
+     */
+    private void scan(CompiledAutomaton compiled, String text, int length,
+            BitSet dictionaries, MatchBuffer buffer,
+            CancellationToken cancellation, long timeout, long deadline) {
+        int maximumEmits = trieConfig.getMaximumEmits();
+        int nextCheck = CHECK_INTERVAL;
+        boolean caseInsensitive = trieConfig.isCaseInsensitive();
+        char[][] classPages = compiled.classPages;
+        int[] transitions = compiled.transitions;
+        int[] firstOutputStates = compiled.firstOutputStates;
+        int width = compiled.width;
+        int currentState = 0;
+        for (int position = 0; position < length; position++) {
+            if (currentState == 0) {
+                position = skipToStartCharacter(text, position, length,
+                        caseInsensitive);
+                if (position == length) {
+                    break;
+                }
+            }
+            if (position >= nextCheck) {
+                if (isInterrupted(cancellation, timeout, deadline)) {
+                    buffer.truncate(buffer.size());
+                    break;
+                }
+                nextCheck = position + CHECK_INTERVAL;
+            }
+            char character = text.charAt(position);
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            currentState = transitions[currentState * width
+                    + classPages[character >>> 8][character & 0xff]];
+            int outputState = firstOutputStates[currentState];
+            if (outputState >= 0) {
+                storeEmits(compiled, position, outputState, dictionaries,
+                        buffer);
+                if (buffer.size() > maximumEmits) {
+                    buffer.truncate(maximumEmits);
+                    break;
+                }
+            }
         }
+    }
 
-        for (Emit<T> removeEmit : removeEmits) {
-            collectedEmits.remove(removeEmit);
+    /**
+     * The same scan as above, running on the minimized automaton.
+     */
+    private void scan(MinimizedAutomaton minimized, String text, int length,
+            BitSet dictionaries, MatchBuffer buffer,
+            CancellationToken cancellation, long timeout, long deadline) {
+        int maximumEmits = trieConfig.getMaximumEmits();
+        int nextCheck = CHECK_INTERVAL;
+        boolean caseInsensitive = trieConfig.isCaseInsensitive();
+        long current = 0;
+        for (int position = 0; position < length; position++) {
+            if (current == 0) {
+                position = skipToStartCharacter(text, position, length,
+                        caseInsensitive);
+                if (position == length) {
+                    break;
+                }
+            }
+            if (position >= nextCheck) {
+                if (isInterrupted(cancellation, timeout, deadline)) {
+                    buffer.truncate(buffer.size());
+                    break;
+                }
+                nextCheck = position + CHECK_INTERVAL;
+            }
+            char character = text.charAt(position);
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            current = minimized.next(current, character);
+            if (minimized.hasOutputs(current)) {
+                storeEmits(minimized, position, current, dictionaries, buffer);
+                if (buffer.size() > maximumEmits) {
+                    buffer.truncate(maximumEmits);
+                    break;
+                }
+            }
         }
     }
 
-    private State<T> getState(State<T> currentState, Character character) {
+    private static boolean isInterrupted(CancellationToken cancellation,
+            long timeout, long deadline) {
+        return (cancellation != null && cancellation.isCancelled())
+                || (timeout > 0 && System.nanoTime() - deadline >= 0);
+    }
+
+    State<T> getState(State<T> currentState, char character) {
+        TransitionCache<T> cache = this.transitionCache;
+        if (cache == null) {
+            return resolveState(currentState, character);
+        }
+        State<T> newCurrentState = cache.get(currentState, character);
+        if (newCurrentState == null) {
+            newCurrentState = resolveState(currentState, character);
+            cache.put(currentState, character, newCurrentState);
+        }
+        return newCurrentState;
+    }
+
+    private static <T> State<T> resolveState(State<T> currentState,
+            Character character) {
         State<T> newCurrentState = currentState.nextState(character);
         while (newCurrentState == null) {
             currentState = currentState.failure();
@@ -152,9 +883,42 @@ public class Trie<T> implements Serializable {
         return newCurrentState;
     }
 
-    private void checkForConstructedFailureStates() {
+    /**
+     * Returns the first position from the given one onwards that holds a
+     * character which can start a keyword, or the length if there is none.
+     * When the start characters of the dictionary are common in the text this
+     * costs no more than one bit test per character, which is cheaper than
+     * the root state lookup it replaces.
+     */
+    int skipToStartCharacter(CharSequence text, int position, int length,
+            boolean caseInsensitive) {
+        long[] bitmap = this.startCharacters;
+        while (position < length) {
+            char character = text.charAt(position);
+            if (caseInsensitive) {
+                character = Character.toLowerCase(character);
+            }
+            if ((bitmap[character >>> 6] & (1L << character)) != 0) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Constructs the failure states on first use. Once they are constructed
+     * the trie is only read, so it can be parsed by many threads at once.
+     * Matchers call this on reset, to pick up keywords added since.
+     */
+    void checkForConstructedFailureStates() {
         if (!this.failureStatesConstructed) {
-            constructFailureStates();
+            synchronized (this) {
+                if (!this.failureStatesConstructed) {
+                    constructFailureStates();
+                    this.failureStatesConstructed = true;
+                }
+            }
         }
     }
 
@@ -166,7 +930,7 @@ public class Trie<T> implements Serializable {
             depthOneState.setFailure(this.rootState);
             queue.add(depthOneState);
         }
-        this.failureStatesConstructed = true;
+        this.startCharacters = startCharacters(this.rootState.getTransitions());
 
         // Second, determine the fail state for all depth > 1 state
         while (!queue.isEmpty()) {
@@ -183,18 +947,119 @@ public class Trie<T> implements Serializable {
                 State<T> newFailureState = traceFailureState
                         .nextState(transition);
                 targetState.setFailure(newFailureState);
-                targetState.addEmit(newFailureState.emits());
+                targetState.setOutput(newFailureState.emits().isEmpty()
+                        ? newFailureState.output() : newFailureState);
             }
         }
     }
 
-    private void storeEmits(int position, State<T> currentState,
-            List<Emit<T>> collectedEmits) {
-        Collection<StringPayload<T>> emits = currentState.emits();
-        if (emits != null && !emits.isEmpty()) {
-            for (StringPayload<T> emit : emits) {
-                collectedEmits.add(new Emit<T>(position - emit.keyword.length()
-                        + 1, position, emit.keyword, emit.payload));
+    private static long[] startCharacters(Iterable<Character> characters) {
+        long[] bitmap = new long[(Character.MAX_VALUE + 1) >>> 6];
+        for (char character : characters) {
+            bitmap[character >>> 6] |= 1L << character;
+        }
+        return bitmap;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        MinimizedAutomaton minimized = this.minimized;
+        if (minimized != null) {
+            List<Character> characters = new ArrayList<Character>();
+            for (int i = 0; i < minimized.transitionStarts[1]; i++) {
+                characters.add(minimized.transitionCharacters[i]);
+            }
+            this.startCharacters = startCharacters(characters);
+            this.failureStatesConstructed = true;
+            return;
+        }
+        this.rootState = new State<T>();
+        for (StringPayload<T> output : this.keywords) {
+            State<T> currentState = this.rootState;
+            for (char character : normalize(output.keyword).toCharArray()) {
+                currentState = currentState.addState(character);
+            }
+            currentState.addEmit(output);
+        }
+    }
+
+    /**
+     * @return the position of the last of the characters from the position on
+     *         that the normalizer drops, or the position itself if it does not
+     *         drop the next one
+     */
+    static int extendOverIgnored(CharNormalizer normalizer, CharSequence text,
+            int position, int length, int previous) {
+        while (position + 1 < length
+                && normalizer.normalize(text.charAt(position + 1), previous) == CharNormalizer.IGNORE) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @param position the end of the matches in the original text
+     * @param positions the positions of the last normalized characters, or
+     *            null if the text is not normalized
+     */
+    void storeEmits(int position, State<T> currentState,
+            BitSet dictionaries, MatchBuffer buffer, PositionRing positions) {
+        for (State<T> state = currentState; state != null; state = state
+                .output()) {
+            int start = positions == null ? position - state.getDepth() + 1
+                    : positions.get(state.getDepth());
+            for (StringPayload<T> emit : state.emits()) {
+                if (dictionaries != null && !dictionaries.get(emit.dictionary)) {
+                    continue;
+                }
+                buffer.add(start, position, emit.keywordId);
+            }
+        }
+    }
+
+    /**
+     * @param current the scan position of the minimized automaton, holding
+     *            the state and the rank of the prefix read
+     */
+    static void storeEmits(MinimizedAutomaton minimized, int position,
+            long current, BitSet dictionaries, MatchBuffer buffer) {
+        int state = (int) current;
+        int rank = (int) (current >>> 32);
+        if (!minimized.accepting[state]) {
+            rank = minimized.outputRanks[state];
+            state = minimized.outputStates[state];
+        }
+        while (state >= 0) {
+            int start = position - minimized.rankLengths[rank] + 1;
+            int end = minimized.rankStarts[rank + 1];
+            for (int i = minimized.rankStarts[rank]; i < end; i++) {
+                int keywordId = minimized.rankKeywordIds[i];
+                if (dictionaries != null
+                        && !dictionaries
+                                .get(minimized.keywordDictionaries[keywordId])) {
+                    continue;
+                }
+                buffer.add(start, position, keywordId);
+            }
+            rank = minimized.outputRanks[state];
+            state = minimized.outputStates[state];
+        }
+    }
+
+    static void storeEmits(CompiledAutomaton compiled, int position,
+            int outputState, BitSet dictionaries, MatchBuffer buffer) {
+        for (int state = outputState; state >= 0; state = compiled.outputLinks[state]) {
+            int end = compiled.outputStarts[state + 1];
+            for (int i = compiled.outputStarts[state]; i < end; i++) {
+                int keywordId = compiled.outputs[i];
+                if (dictionaries != null
+                        && !dictionaries
+                                .get(compiled.keywordDictionaries[keywordId])) {
+                    continue;
+                }
+                buffer.add(position - compiled.keywordLengths[keywordId] + 1,
+                        position, keywordId);
             }
         }
     }
@@ -11,6 +11,14 @@ public class TrieConfig implements Serializable {
 
     private boolean caseInsensitive = false;
 
+    private int maximumEmits = Integer.MAX_VALUE;
+
+    private int maximumTextLength = Integer.MAX_VALUE;
+
+    private long timeoutNanos = 0;
+
+    private CharNormalizer charNormalizer = null;
+
     public boolean isAllowOverlaps() {
         return allowOverlaps;
     }
@@ -34,4 +42,52 @@ public class TrieConfig implements Serializable {
     public void setCaseInsensitive(boolean caseInsensitive) {
         this.caseInsensitive = caseInsensitive;
     }
+
+    public int getMaximumEmits() {
+        return maximumEmits;
+    }
+
+    /**
+     * Stops a parse once this many emits have been found, before whole word
+     * and overlap filtering.
+     */
+    public void setMaximumEmits(int maximumEmits) {
+        this.maximumEmits = maximumEmits;
+    }
+
+    public int getMaximumTextLength() {
+        return maximumTextLength;
+    }
+
+    /**
+     * Only parses the first characters of a text, up to this length.
+     */
+    public void setMaximumTextLength(int maximumTextLength) {
+        this.maximumTextLength = maximumTextLength;
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * Stops a parse once it has been running for this many nanoseconds. Zero
+     * means no timeout. The time is checked every few thousand characters, so
+     * a parse may run a little over.
+     */
+    public void setTimeoutNanos(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public CharNormalizer getCharNormalizer() {
+        return charNormalizer;
+    }
+
+    /**
+     * Normalizes the characters of the keywords and the text before they are
+     * matched. Set it before adding keywords. Null means no normalization.
+     */
+    public void setCharNormalizer(CharNormalizer charNormalizer) {
+        this.charNormalizer = charNormalizer;
+    }
 }
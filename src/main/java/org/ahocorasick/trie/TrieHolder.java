@@ -0,0 +1,174 @@
+package org.ahocorasick.trie;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Holds the trie that is currently in use, and replaces it with a new one
+ * while it stays in use. Replacement tries are built in the background and
+ * published with a single volatile write once their failure states have been
+ * constructed, so readers never wait and never see a half-built trie.
+ * </p>
+ *
+ * <p>
+ * The holder keeps no reference to a trie once it has been replaced. Scans
+ * that are still running on it finish normally, after which the garbage
+ * collector reclaims it. A refresh supersedes all earlier ones: their futures
+ * are cancelled, builds that have not started yet are dropped, running ones
+ * are interrupted, and a superseded build that completes anyway is not
+ * published. By default the builds run one at a time on a single background
+ * thread, so frequent refreshes cannot pile up builds.
+ * </p>
+ *
+ * <p>
+ * The holder does nothing to lower the peak heap of a refresh: while the
+ * replacement is built, the current trie stays in use, so the heap holds
+ * both, plus the garbage of the build, until the scans on the old trie drain.
+ * Size the heap for two dictionaries, or minimize the tries to shrink both.
+ * </p>
+ */
+public class TrieHolder<T> {
+
+    /** names the refresh threads and keeps them from holding up the JVM */
+    private static final ThreadFactory REFRESH_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable command) {
+            Thread thread = new Thread(command, "trie-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final Executor executor;
+
+    private final AtomicLong generations = new AtomicLong();
+
+    /** the future of the latest refresh, cancelled when a newer one starts */
+    private final AtomicReference<Future<Trie<T>>> latest = new AtomicReference<Future<Trie<T>>>();
+
+    private volatile Trie<T> current;
+
+    /**
+     * Runs the builds one at a time on a background thread, which stops after
+     * a minute without refreshes.
+     */
+    public TrieHolder(Trie<T> initial) {
+        this(initial, new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), REFRESH_THREADS));
+    }
+
+    /**
+     * @param initial the trie to use until the first refresh completes
+     * @param executor runs the builds of replacement tries
+     */
+    public TrieHolder(Trie<T> initial, Executor executor) {
+        this.current = initial.build();
+        this.executor = executor;
+    }
+
+    /**
+     * @return the trie currently in use. Hold on to it to run several
+     *         operations against the same dictionary.
+     */
+    public Trie<T> get() {
+        return this.current;
+    }
+
+    public Collection<Emit<T>> parseText(String text) {
+        return this.current.parseText(text);
+    }
+
+    public Collection<Token> tokenize(String text) {
+        return this.current.tokenize(text);
+    }
+
+    public ParseResult<Emit<T>> parseResult(String text) {
+        return this.current.parseResult(text);
+    }
+
+    public ParseResult<Token> tokenizeResult(String text) {
+        return this.current.tokenizeResult(text);
+    }
+
+    /**
+     * Builds a replacement trie in the background and publishes it once it is
+     * complete, unless a newer refresh has been started by then. If the build
+     * fails, the current trie stays in use and the returned future holds the
+     * failure.
+     *
+     * @param builder creates the replacement trie
+     * @return the future of the trie that was published, cancelled if a newer
+     *         refresh supersedes it
+     */
+    public Future<Trie<T>> refresh(final Callable<Trie<T>> builder) {
+        final long generation = this.generations.incrementAndGet();
+        FutureTask<Trie<T>> task = new FutureTask<Trie<T>>(
+                new Callable<Trie<T>>() {
+                    @Override
+                    public Trie<T> call() throws Exception {
+                        if (generation != generations.get()) {
+                            throw new CancellationException();
+                        }
+                        Trie<T> trie = builder.call().build();
+                        publish(generation, trie);
+                        return trie;
+                    }
+                });
+        Future<Trie<T>> superseded = this.latest.getAndSet(task);
+        if (superseded != null) {
+            superseded.cancel(true);
+        }
+        this.executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Replaces the current trie with one that was serialized to a file. The
+     * file holds the keywords, from which the states are rebuilt, and the
+     * compiled or minimized tables, which are read as they are.
+     */
+    public Future<Trie<T>> refresh(final File serializedTrie) {
+        return refresh(new Callable<Trie<T>>() {
+            @Override
+            public Trie<T> call() throws IOException, ClassNotFoundException {
+                InputStream input = new BufferedInputStream(
+                        new FileInputStream(serializedTrie));
+                try {
+                    return read(input);
+                } finally {
+                    input.close();
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Trie<T> read(InputStream input) throws IOException,
+            ClassNotFoundException {
+        return (Trie<T>) new ObjectInputStream(input).readObject();
+    }
+
+    private synchronized void publish(long generation, Trie<T> trie) {
+        if (generation == this.generations.get()) {
+            this.current = trie;
+        }
+    }
+
+}
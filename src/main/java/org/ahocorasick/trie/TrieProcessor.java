@@ -0,0 +1,267 @@
+package org.ahocorasick.trie;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * <p>
+ * A Reactive Streams processor that parses every document it receives with a
+ * trie and publishes the emits of each document as one collection, in the
+ * order the documents arrived.
+ * </p>
+ *
+ * <p>
+ * Every element is matched as a text of its own, and no state is carried from
+ * one element to the next. Feed it whole documents: if a document arrives in
+ * chunks, a keyword that spans two chunks is not found, and the positions of
+ * the emits are relative to the chunk they were found in.
+ * </p>
+ *
+ * <p>
+ * Documents are requested from upstream in batches, and a document is only
+ * parsed once the subscriber has signalled demand for its emits. The processor
+ * therefore never buffers more than one batch of documents, however slow the
+ * subscriber is. Parsing happens on whichever thread delivers the document or
+ * the demand that makes it ready, so no extra threads are needed.
+ * </p>
+ *
+ * <p>
+ * On Java 9 and later, org.reactivestreams.FlowAdapters turns this processor
+ * into a java.util.concurrent.Flow.Processor.
+ * </p>
+ */
+public class TrieProcessor<T> implements
+        Processor<String, Collection<Emit<T>>>, Subscription {
+
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** stands in for the upstream subscription once it has been cancelled */
+    private static final Subscription CANCELLED = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Trie<T> trie;
+
+    private final int batchSize;
+
+    /** number of parsed documents after which the next batch is requested */
+    private final int replenishLimit;
+
+    private final AtomicReference<Subscription> upstream = new AtomicReference<Subscription>();
+
+    private final AtomicReference<Subscriber<? super Collection<Emit<T>>>> downstream = new AtomicReference<Subscriber<? super Collection<Emit<T>>>>();
+
+    private final Queue<String> documents = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicLong requested = new AtomicLong();
+
+    /** guards the drain loop, so only one thread signals the subscriber */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    private volatile boolean done;
+
+    private volatile boolean cancelled;
+
+    /** only accessed from within the drain loop */
+    private int consumed;
+
+    public TrieProcessor(Trie<T> trie) {
+        this(trie, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param trie the trie to parse the documents with
+     * @param batchSize the maximum number of documents requested from
+     *            upstream ahead of the subscriber's demand
+     */
+    public TrieProcessor(Trie<T> trie, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.trie = trie;
+        this.batchSize = batchSize;
+        this.replenishLimit = batchSize - (batchSize >> 2);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("Subscription must not be null");
+        }
+        if (!this.upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(this.batchSize);
+    }
+
+    @Override
+    public void onNext(String document) {
+        if (document == null) {
+            throw new NullPointerException("Document must not be null");
+        }
+        this.documents.offer(document);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("Throwable must not be null");
+        }
+        this.error.compareAndSet(null, throwable);
+        this.done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        this.done = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Collection<Emit<T>>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        if (!this.downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(CANCELLED);
+            subscriber.onError(new IllegalStateException(
+                    "TrieProcessor allows only a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(this);
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            this.error.compareAndSet(null, new IllegalArgumentException(
+                    "Requested number of elements must be positive: " + n));
+            this.done = true;
+            cancelUpstream();
+        } else {
+            long current;
+            long next;
+            do {
+                current = this.requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!this.requested.compareAndSet(current, next));
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+        cancelUpstream();
+        drain();
+    }
+
+    private void cancelUpstream() {
+        Subscription subscription = this.upstream.getAndSet(CANCELLED);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            Subscriber<? super Collection<Emit<T>>> subscriber = this.downstream
+                    .get();
+            if (subscriber != null) {
+                long demand = this.requested.get();
+                long emitted = 0;
+                while (emitted != demand) {
+                    if (isTerminated(subscriber)) {
+                        return;
+                    }
+                    String document = this.documents.poll();
+                    if (document == null) {
+                        break;
+                    }
+                    Collection<Emit<T>> emits;
+                    try {
+                        emits = this.trie.parseText(document);
+                    } catch (RuntimeException e) {
+                        this.cancelled = true;
+                        cancelUpstream();
+                        this.documents.clear();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onNext(emits);
+                    emitted++;
+                    if (++this.consumed == this.replenishLimit) {
+                        this.consumed = 0;
+                        this.upstream.get().request(this.replenishLimit);
+                    }
+                }
+                if (isTerminated(subscriber)) {
+                    return;
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    this.requested.addAndGet(-emitted);
+                }
+            } else if (this.cancelled) {
+                this.documents.clear();
+            }
+            missed = this.wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Checks for cancellation and signals a pending error right away, or the
+     * completion once all documents have been delivered. Once this returns
+     * true, the drain loop is left without releasing it, so no further
+     * signals can follow.
+     */
+    private boolean isTerminated(
+            Subscriber<? super Collection<Emit<T>>> subscriber) {
+        if (this.cancelled) {
+            this.documents.clear();
+            return true;
+        }
+        if (this.done) {
+            Throwable throwable = this.error.get();
+            if (throwable != null) {
+                this.cancelled = true;
+                this.documents.clear();
+                subscriber.onError(throwable);
+                return true;
+            }
+            if (this.documents.isEmpty()) {
+                this.cancelled = true;
+                subscriber.onComplete();
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,402 @@
+package org.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ahocorasick.trie.State.StringPayload;
+
+/**
+ * <p>
+ * The shape of the automaton of a trie and an estimate of the memory it
+ * retains, per component. Use it to size heaps for a dictionary, or to notice
+ * when a change to a dictionary blows up the automaton.
+ * </p>
+ *
+ * <p>
+ * Sizes are estimated for a 64 bit JVM with compressed references, counting
+ * strings at two bytes per character. Payloads are not counted, as their size
+ * is unknown to the trie.
+ * </p>
+ */
+public class TrieStatistics {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    /** header, depth and five references */
+    private static final int STATE = align(
+            OBJECT_HEADER + 4 + 5 * REFERENCE);
+    /** header, size, mod count and seven references */
+    private static final int TREE_MAP = align(
+            OBJECT_HEADER + 8 + 7 * REFERENCE);
+    /** header, colour and five references */
+    private static final int TREE_MAP_ENTRY = align(
+            OBJECT_HEADER + 1 + 5 * REFERENCE);
+    /** characters up to 127 are boxed into shared instances */
+    private static final int CHARACTER = align(OBJECT_HEADER + 2);
+    private static final int ARRAY_LIST = align(OBJECT_HEADER + 8 + REFERENCE);
+    /** header, keyword, payload, dictionary and keyword id */
+    private static final int STRING_PAYLOAD = align(
+            OBJECT_HEADER + 8 + 2 * REFERENCE);
+    private static final int STRING = align(OBJECT_HEADER + 8 + REFERENCE);
+    /** header and three fields of a transition cache entry */
+    private static final int CACHE_ENTRY = align(
+            OBJECT_HEADER + 2 + 2 * REFERENCE);
+
+    private final int keywordCount;
+    private final int stateCount;
+    private final int transitionCount;
+    private final int[] fanOutHistogram;
+    private final int[] depthHistogram;
+    private final long outputCount;
+    private final long totalOutputCount;
+
+    private final long stateBytes;
+    private final long transitionBytes;
+    private final long outputBytes;
+    private final long keywordBytes;
+    private final long compiledBytes;
+    private final long transitionCacheBytes;
+
+    private final boolean compiled;
+    private final int compiledWidth;
+
+    private final boolean minimized;
+
+    <T> TrieStatistics(State<T> rootState, List<StringPayload<T>> keywords,
+            long[] startCharacters, CompiledAutomaton compiledAutomaton,
+            TransitionCache<T> transitionCache,
+            MinimizedAutomaton minimizedAutomaton) {
+        long keywordCharacters = 0;
+        for (StringPayload<T> keyword : keywords) {
+            keywordCharacters += keyword.keyword.length();
+        }
+        this.keywordCount = keywords.size();
+        this.keywordBytes = (long) (STRING + ARRAY_HEADER) * this.keywordCount
+                + 2 * keywordCharacters + ARRAY_LIST
+                + arrayBytes(this.keywordCount, REFERENCE);
+        long startCharacterBytes = startCharacters == null ? 0 : arrayBytes(
+                startCharacters.length, 8);
+
+        this.minimized = minimizedAutomaton != null;
+        if (this.minimized) {
+            MinimizedAutomaton automaton = minimizedAutomaton;
+            int count = automaton.stateCount;
+            int maximumFanOut = 0;
+            for (int state = 0; state < count; state++) {
+                maximumFanOut = Math.max(maximumFanOut,
+                        automaton.transitionStarts[state + 1]
+                                - automaton.transitionStarts[state]);
+            }
+            int[] fanOuts = new int[maximumFanOut + 1];
+            for (int state = 0; state < count; state++) {
+                fanOuts[automaton.transitionStarts[state + 1]
+                        - automaton.transitionStarts[state]]++;
+            }
+
+            // A merged state is reached at several depths; count it at the
+            // shallowest, found breadth first
+            int[] depths = new int[count];
+            int[] queue = new int[count];
+            boolean[] seen = new boolean[count];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = 0;
+            seen[0] = true;
+            int maximumDepth = 0;
+            while (head < tail) {
+                int state = queue[head++];
+                maximumDepth = Math.max(maximumDepth, depths[state]);
+                int end = automaton.transitionStarts[state + 1];
+                for (int i = automaton.transitionStarts[state]; i < end; i++) {
+                    int target = automaton.transitionTargets[i];
+                    if (!seen[target]) {
+                        seen[target] = true;
+                        depths[target] = depths[state] + 1;
+                        queue[tail++] = target;
+                    }
+                }
+            }
+            int[] depthHistogram = new int[maximumDepth + 1];
+            for (int state = 0; state < count; state++) {
+                depthHistogram[depths[state]]++;
+            }
+
+            // Every state on an output chain ends one distinct keyword
+            long totalOutputs = 0;
+            for (int state = 0; state < count; state++) {
+                if (automaton.accepting[state]) {
+                    totalOutputs++;
+                }
+                int output = automaton.outputStates[state];
+                while (output >= 0) {
+                    totalOutputs++;
+                    output = automaton.outputStates[output];
+                }
+            }
+
+            this.stateCount = count;
+            this.transitionCount = automaton.transitionCount();
+            this.fanOutHistogram = fanOuts;
+            this.depthHistogram = depthHistogram;
+            this.outputCount = this.keywordCount;
+            this.totalOutputCount = totalOutputs;
+            this.stateBytes = arrayBytes(count + 1, 4) + 5
+                    * arrayBytes(count, 4) + arrayBytes(count, 1);
+            this.transitionBytes = arrayBytes(this.transitionCount, 2) + 2
+                    * arrayBytes(this.transitionCount, 4)
+                    + startCharacterBytes;
+            this.outputBytes = arrayBytes(automaton.rankStarts.length, 4)
+                    + arrayBytes(automaton.rankKeywordIds.length, 4)
+                    + arrayBytes(automaton.rankLengths.length, 4)
+                    + arrayBytes(automaton.keywordDictionaries.length, 4);
+        } else {
+            List<State<T>> states = new ArrayList<State<T>>();
+            states.add(rootState);
+            int transitions = 0;
+            int boxedCharacters = 0;
+            int maximumFanOut = 0;
+            int maximumDepth = 0;
+            long outputs = 0;
+            long emitListBytes = 0;
+            for (int i = 0; i < states.size(); i++) {
+                State<T> state = states.get(i);
+                for (Character character : state.getTransitions()) {
+                    if (character > 127) {
+                        boxedCharacters++;
+                    }
+                }
+                int fanOut = state.getTransitions().size();
+                transitions += fanOut;
+                maximumFanOut = Math.max(maximumFanOut, fanOut);
+                maximumDepth = Math.max(maximumDepth, state.getDepth());
+                states.addAll(state.getStates());
+                int emits = state.emits().size();
+                outputs += emits;
+                if (emits > 0) {
+                    emitListBytes += ARRAY_LIST + align(ARRAY_HEADER
+                            + REFERENCE * Math.max(10, emits));
+                }
+            }
+
+            // States are listed breadth first, so the output state of every
+            // state has been counted before it.
+            int[] fanOuts = new int[maximumFanOut + 1];
+            int[] depths = new int[maximumDepth + 1];
+            Map<State<T>, Long> reachableOutputs = new IdentityHashMap<State<T>, Long>();
+            long totalOutputs = 0;
+            for (State<T> state : states) {
+                fanOuts[state.getTransitions().size()]++;
+                depths[state.getDepth()]++;
+                long reachable = state.emits().size();
+                if (state.output() != null) {
+                    reachable += reachableOutputs.get(state.output());
+                }
+                reachableOutputs.put(state, reachable);
+                totalOutputs += reachable;
+            }
+
+            this.stateCount = states.size();
+            this.transitionCount = transitions;
+            this.fanOutHistogram = fanOuts;
+            this.depthHistogram = depths;
+            this.outputCount = outputs;
+            this.totalOutputCount = totalOutputs;
+            this.stateBytes = (long) STATE * this.stateCount;
+            this.transitionBytes = (long) TREE_MAP * this.stateCount
+                    + (long) TREE_MAP_ENTRY * transitions
+                    + (long) CHARACTER * boxedCharacters
+                    + startCharacterBytes;
+            this.outputBytes = emitListBytes + (long) STRING_PAYLOAD
+                    * this.keywordCount;
+        }
+
+        this.compiled = compiledAutomaton != null;
+        this.compiledWidth = this.compiled ? compiledAutomaton.width : 0;
+        this.compiledBytes = this.compiled ? compiledBytes(compiledAutomaton)
+                : 0;
+        this.transitionCacheBytes = transitionCache == null ? 0 : arrayBytes(
+                transitionCache.capacity(), REFERENCE)
+                + (long) CACHE_ENTRY * transitionCache.size();
+    }
+
+    public int getKeywordCount() {
+        return this.keywordCount;
+    }
+
+    public int getStateCount() {
+        return this.stateCount;
+    }
+
+    /**
+     * @return the number of success transitions, which is the number of
+     *         states minus the root state
+     */
+    public int getTransitionCount() {
+        return this.transitionCount;
+    }
+
+    /**
+     * @return the number of states with each number of outgoing
+     *         transitions, indexed by that number
+     */
+    public int[] getFanOutHistogram() {
+        return this.fanOutHistogram.clone();
+    }
+
+    /**
+     * @return the number of states at each depth, indexed by depth. The
+     *         length minus one is the length of the longest keyword.
+     */
+    public int[] getDepthHistogram() {
+        return this.depthHistogram.clone();
+    }
+
+    /**
+     * @return the number of outputs stored on the states, one for every
+     *         keyword
+     */
+    public long getOutputCount() {
+        return this.outputCount;
+    }
+
+    /**
+     * @return the number of outputs reachable from all states together,
+     *         including the ones reached through the output links. This is
+     *         the number of outputs the states would hold if every state held
+     *         a copy of the outputs it inherits.
+     */
+    public long getTotalOutputCount() {
+        return this.totalOutputCount;
+    }
+
+    public long getStateBytes() {
+        return this.stateBytes;
+    }
+
+    /**
+     * @return the estimated size of the transition maps of the states,
+     *         including the bitmap of start characters
+     */
+    public long getTransitionBytes() {
+        return this.transitionBytes;
+    }
+
+    /**
+     * @return the estimated size of the output lists of the states
+     */
+    public long getOutputBytes() {
+        return this.outputBytes;
+    }
+
+    /**
+     * @return the estimated size of the keyword strings and the keyword index
+     */
+    public long getKeywordBytes() {
+        return this.keywordBytes;
+    }
+
+    /**
+     * @return the estimated size of the compiled transition table, or 0 if
+     *         the trie is not compiled
+     */
+    public long getCompiledBytes() {
+        return this.compiledBytes;
+    }
+
+    /**
+     * @return the estimated size of the transition cache as it is filled now,
+     *         or 0 if there is none
+     */
+    public long getTransitionCacheBytes() {
+        return this.transitionCacheBytes;
+    }
+
+    /**
+     * @return the estimated size of everything the trie retains, except the
+     *         payloads
+     */
+    public long getEstimatedBytes() {
+        return this.stateBytes + this.transitionBytes + this.outputBytes
+                + this.keywordBytes + this.compiledBytes
+                + this.transitionCacheBytes;
+    }
+
+    public boolean isCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * @return whether the trie was minimized. The states and transitions are
+     *         then those of the minimized automaton, every state is counted
+     *         at the shallowest depth it is reached at, and the outputs
+     *         reachable from the states count one per distinct keyword.
+     */
+    public boolean isMinimized() {
+        return this.minimized;
+    }
+
+    /**
+     * @return the number of character classes of the compiled table, which is
+     *         the number of distinct keyword characters plus one, or 0 if the
+     *         trie is not compiled
+     */
+    public int getCompiledWidth() {
+        return this.compiledWidth;
+    }
+
+    @Override
+    public String toString() {
+        return "keywords=" + this.keywordCount + ", states=" + this.stateCount
+                + ", transitions=" + this.transitionCount + ", maximumDepth="
+                + (this.depthHistogram.length - 1) + ", maximumFanOut="
+                + (this.fanOutHistogram.length - 1) + ", outputs="
+                + this.outputCount + ", totalOutputs=" + this.totalOutputCount
+                + ", compiled=" + this.compiled + ", minimized="
+                + this.minimized + ", estimatedBytes="
+                + getEstimatedBytes();
+    }
+
+    private static long compiledBytes(CompiledAutomaton compiled) {
+        // pages without keyword characters share a single empty page
+        long bytes = arrayBytes(compiled.classPages.length, REFERENCE)
+                + arrayBytes(256, 2);
+        for (char[] page : compiled.classPages) {
+            if (!isEmpty(page)) {
+                bytes += arrayBytes(page.length, 2);
+            }
+        }
+        return bytes + arrayBytes(compiled.transitions.length, 4)
+                + arrayBytes(compiled.firstOutputStates.length, 4)
+                + arrayBytes(compiled.outputLinks.length, 4)
+                + arrayBytes(compiled.outputStarts.length, 4)
+                + arrayBytes(compiled.outputs.length, 4)
+                + arrayBytes(compiled.keywordLengths.length, 4)
+                + arrayBytes(compiled.keywordDictionaries.length, 4);
+    }
+
+    private static boolean isEmpty(char[] page) {
+        for (char characterClass : page) {
+            if (characterClass != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long arrayBytes(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.ahocorasick.interval;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntervalIndexTest {
+
+    @Test
+    public void rangeQuery() {
+        int[] starts = { 5, 0, 2, 8, 1 };
+        int[] ends = { 7, 2, 4, 9, 20 };
+        IntervalIndex index = new IntervalIndex(starts, ends, starts.length);
+        int[] result = new int[5];
+        assertEquals(2, index.findOverlaps(5, 6, result));
+        assertEquals(4, result[0]); // 1:20
+        assertEquals(0, result[1]); // 5:7
+        assertEquals(0, index.countOverlaps(21, 30));
+    }
+
+    @Test
+    public void stabbingQuery() {
+        int[] starts = { 0, 2, 4 };
+        int[] ends = { 2, 4, 6 };
+        IntervalIndex index = new IntervalIndex(starts, ends, starts.length);
+        int[] result = new int[3];
+        assertEquals(2, index.findOverlaps(2, result));
+        assertEquals(0, result[0]);
+        assertEquals(1, result[1]);
+    }
+
+    @Test
+    public void resultArrayTooSmall() {
+        int[] starts = { 0, 1, 2 };
+        int[] ends = { 9, 9, 9 };
+        IntervalIndex index = new IntervalIndex(starts, ends, starts.length);
+        int[] result = new int[1];
+        assertEquals(3, index.findOverlaps(5, result));
+        assertEquals(0, result[0]);
+    }
+
+    @Test
+    public void sameResultAsLinearScan() {
+        Random random = new Random(7);
+        int count = 1000000;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(10000000);
+            ends[i] = starts[i] + random.nextInt(100);
+        }
+        IntervalIndex index = new IntervalIndex(starts, ends, count);
+        int[] result = new int[1000];
+        for (int query = 0; query < 20; query++) {
+            int start = random.nextInt(10000000);
+            int end = start + random.nextInt(1000);
+            int expected = 0;
+            for (int i = 0; i < count; i++) {
+                if (starts[i] <= end && ends[i] >= start) {
+                    expected++;
+                }
+            }
+            int found = index.findOverlaps(start, end, result);
+            assertEquals(expected, found);
+            for (int i = 0; i < found; i++) {
+                int interval = result[i];
+                assertEquals(true, starts[interval] <= end
+                        && ends[interval] >= start);
+            }
+        }
+    }
+
+}
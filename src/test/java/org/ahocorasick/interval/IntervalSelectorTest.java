@@ -0,0 +1,78 @@
+package org.ahocorasick.interval;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntervalSelectorTest {
+
+    @Test
+    public void longestAndLeftMostPrevail() {
+        int[] starts = { 0, 1, 2, 3, 6, 6 };
+        int[] ends = { 1, 3, 6, 4, 7, 8 };
+        int[] selected = new int[starts.length];
+        int count = new IntervalSelector().removeOverlaps(starts, ends,
+                starts.length, selected);
+        assertEquals(2, count); // 2:6 is the longest, 0:1 does not touch it
+        assertEquals(0, selected[0]);
+        assertEquals(2, selected[1]);
+    }
+
+    @Test
+    public void equalIntervalsAreKeptTogether() {
+        int[] starts = { 4, 0, 4, 5 };
+        int[] ends = { 6, 1, 6, 9 };
+        int[] selected = new int[starts.length];
+        int count = new IntervalSelector().removeOverlaps(starts, ends,
+                starts.length, selected);
+        assertEquals(2, count);
+        assertEquals(1, selected[0]);
+        assertEquals(3, selected[1]);
+
+        ends[3] = 6;
+        count = new IntervalSelector().removeOverlaps(starts, ends,
+                starts.length, selected);
+        assertEquals(3, count);
+        assertEquals(1, selected[0]);
+        assertEquals(0, selected[1]);
+        assertEquals(2, selected[2]);
+    }
+
+    @Test
+    public void sameResultAsIntervalTree() {
+        Random random = new Random(42);
+        IntervalSelector selector = new IntervalSelector();
+        for (int round = 0; round < 200; round++) {
+            int size = 1 + random.nextInt(60);
+            Set<Interval> unique = new HashSet<Interval>();
+            while (unique.size() < size) {
+                int start = random.nextInt(100);
+                unique.add(new Interval(start, start + random.nextInt(10)));
+            }
+            List<Intervalable> intervals = new ArrayList<Intervalable>(unique);
+            int[] starts = new int[size];
+            int[] ends = new int[size];
+            for (int i = 0; i < size; i++) {
+                starts[i] = intervals.get(i).getStart();
+                ends[i] = intervals.get(i).getEnd();
+            }
+            int[] selected = new int[size];
+            int count = selector.removeOverlaps(starts, ends, size, selected);
+
+            List<Intervalable> expected = new IntervalTree(intervals)
+                    .removeOverlaps(new ArrayList<Intervalable>(intervals));
+            assertEquals(expected.size(), count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected.get(i).getStart(), starts[selected[i]]);
+                assertEquals(expected.get(i).getEnd(), ends[selected[i]]);
+            }
+        }
+    }
+
+}
@@ -42,6 +42,17 @@ public class IntervalTest {
         assertFalse(new Interval(1, 13).overlapsWith(42));
     }
 
+    @Test
+    public void hashCodeSpreadsNearbyIntervals() {
+        Set<Integer> hashCodes = new HashSet<Integer>();
+        for (int start = 0; start < 100; start++) {
+            for (int end = start; end < start + 10; end++) {
+                hashCodes.add(new Interval(start, end).hashCode());
+            }
+        }
+        assertEquals(1000, hashCodes.size());
+    }
+
     @Test
     public void comparable() {
         Set<Interval> intervals = new TreeSet<Interval>();
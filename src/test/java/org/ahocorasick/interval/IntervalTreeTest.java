@@ -23,9 +23,9 @@ public class IntervalTreeTest {
         List<Intervalable> overlaps = intervalTree.findOverlaps(new Interval(1,3));
         assertEquals(3, overlaps.size());
         Iterator<Intervalable> overlapsIt = overlaps.iterator();
+        assertOverlap(overlapsIt.next(), 0, 2);
         assertOverlap(overlapsIt.next(), 2, 4);
         assertOverlap(overlapsIt.next(), 3, 5);
-        assertOverlap(overlapsIt.next(), 0, 2);
     }
 
     @Test
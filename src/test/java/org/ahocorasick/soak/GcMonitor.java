@@ -0,0 +1,82 @@
+package org.ahocorasick.soak;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Records the duration of every garbage collection while it is started, from
+ * the notifications of the collector beans. On collectors that run
+ * concurrently with the application the reported durations include the
+ * concurrent phases, so they overstate the pauses.
+ */
+class GcMonitor implements NotificationListener {
+
+    private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+    private final LatencyHistogram pauses = new LatencyHistogram();
+
+    private long totalMillis = 0;
+
+    void start() {
+        for (GarbageCollectorMXBean bean : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) bean;
+                emitter.addNotificationListener(this, null, null);
+                this.emitters.add(emitter);
+            }
+        }
+    }
+
+    void stop() {
+        for (NotificationEmitter emitter : this.emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // already removed
+            }
+        }
+        this.emitters.clear();
+    }
+
+    @Override
+    public synchronized void handleNotification(Notification notification,
+            Object handback) {
+        if (!notification.getType().equals(
+                GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                .from((CompositeData) notification.getUserData());
+        long millis = info.getGcInfo().getDuration();
+        this.pauses.record(millis);
+        this.totalMillis += millis;
+    }
+
+    synchronized long getCount() {
+        return this.pauses.getCount();
+    }
+
+    synchronized long getTotalMillis() {
+        return this.totalMillis;
+    }
+
+    synchronized long getMaximumMillis() {
+        return this.pauses.getMaximum();
+    }
+
+    synchronized long getPercentileMillis(double percentile) {
+        return this.pauses.getPercentile(percentile);
+    }
+
+}
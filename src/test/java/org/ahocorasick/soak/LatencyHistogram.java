@@ -0,0 +1,77 @@
+package org.ahocorasick.soak;
+
+/**
+ * Counts latencies in buckets that grow exponentially, with eight buckets per
+ * power of two, so any percentile is known to within about 12% in a fixed
+ * amount of memory. Recording is not thread safe; give every thread its own
+ * histogram and merge them afterwards.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private final long[] counts = new long[64 << SUB_BUCKET_BITS];
+
+    private long count = 0;
+
+    private long maximum = 0;
+
+    void record(long nanos) {
+        this.counts[bucket(Math.max(1, nanos))]++;
+        this.count++;
+        this.maximum = Math.max(this.maximum, nanos);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.count += other.count;
+        this.maximum = Math.max(this.maximum, other.maximum);
+    }
+
+    long getCount() {
+        return this.count;
+    }
+
+    long getMaximum() {
+        return this.maximum;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket that holds the percentile
+     */
+    long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(percentile / 100 * this.count);
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), this.maximum);
+            }
+        }
+        return this.maximum;
+    }
+
+    private static int bucket(long nanos) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude < SUB_BUCKET_BITS) {
+            return (int) nanos;
+        }
+        int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS))
+                & ((1 << SUB_BUCKET_BITS) - 1);
+        return (magnitude << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        int magnitude = bucket >>> SUB_BUCKET_BITS;
+        if (magnitude < SUB_BUCKET_BITS) {
+            return bucket;
+        }
+        long subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        long width = 1L << (magnitude - SUB_BUCKET_BITS);
+        return (1L << magnitude) + (subBucket + 1) * width - 1;
+    }
+
+}
@@ -0,0 +1,507 @@
+package org.ahocorasick.soak;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ahocorasick.trie.Trie;
+import org.ahocorasick.trie.TrieHolder;
+import org.ahocorasick.trie.TrieStatistics;
+
+/**
+ * <p>
+ * Runs a trie under sustained concurrent load, to see how it behaves after
+ * hours rather than after a microbenchmark: it generates a dictionary and a
+ * corpus of the configured size, parses or tokenizes the corpus from a number
+ * of threads for the configured duration, and replaces the dictionary at a
+ * fixed interval through a {@link TrieHolder}. Each replacement is the
+ * original dictionary with a tenth of its keywords swapped for new ones, so the
+ * corpus keeps about the same share of matches across rebuilds. The trie runs on its regular
+ * automaton, or compiled, compiled with its layout optimized on the corpus,
+ * or minimized, so that the engines can be compared on the same load. At the end it writes
+ * throughput, latency percentiles, allocation rate, garbage collection pauses,
+ * build times and retained heap per keyword to a JSON file, for comparison
+ * across versions.
+ * </p>
+ *
+ * <p>
+ * Run it with <code>mvn -Psoak verify</code>. All settings are system
+ * properties, for instance <code>-Dsoak.threads=16
+ * -Dsoak.durationSeconds=3600 -Dsoak.keywords=1000000</code>; see the
+ * <code>soak</code> profile in the pom for the full list and the defaults.
+ * </p>
+ */
+public class SoakHarness {
+
+    /** the share of the keywords that a rebuild replaces */
+    private static final double REPLACED_KEYWORDS = 0.1;
+
+    private final int keywords;
+    private final int minimumKeywordLength;
+    private final int maximumKeywordLength;
+    private final int documents;
+    private final int documentLength;
+    private final double keywordDensity;
+    private final int threads;
+    private final long durationSeconds;
+    private final long rebuildSeconds;
+    private final String mode;
+    private final String engine;
+    private final long seed;
+    private final File output;
+
+    private volatile boolean running = true;
+
+    public SoakHarness(int keywords, int minimumKeywordLength,
+            int maximumKeywordLength, int documents, int documentLength,
+            double keywordDensity, int threads, long durationSeconds,
+            long rebuildSeconds, String mode, String engine, long seed,
+            File output) {
+        if (!mode.equals("parse") && !mode.equals("tokenize")
+                && !mode.equals("mixed")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        if (!engine.equals("regular") && !engine.equals("compiled")
+                && !engine.equals("optimized") && !engine.equals("minimized")) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        if (keywords <= 0 || documents <= 0 || documentLength <= 0
+                || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Keywords, documents, document length and threads must be positive");
+        }
+        if (minimumKeywordLength <= 0
+                || maximumKeywordLength < minimumKeywordLength) {
+            throw new IllegalArgumentException("Invalid keyword lengths: "
+                    + minimumKeywordLength + " to " + maximumKeywordLength);
+        }
+        if (keywordDensity < 0 || keywordDensity > 1) {
+            throw new IllegalArgumentException(
+                    "Keyword density must be between 0 and 1: "
+                            + keywordDensity);
+        }
+        if (durationSeconds < 0 || rebuildSeconds < 0) {
+            throw new IllegalArgumentException(
+                    "Durations must not be negative");
+        }
+        this.keywords = keywords;
+        this.minimumKeywordLength = minimumKeywordLength;
+        this.maximumKeywordLength = maximumKeywordLength;
+        this.documents = documents;
+        this.documentLength = documentLength;
+        this.keywordDensity = keywordDensity;
+        this.threads = threads;
+        this.durationSeconds = durationSeconds;
+        this.rebuildSeconds = rebuildSeconds;
+        this.mode = mode;
+        this.engine = engine;
+        this.seed = seed;
+        this.output = output;
+    }
+
+    public static void main(String[] arguments) throws Exception {
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss")
+                .format(new Date());
+        SoakHarness harness = new SoakHarness(
+                Integer.getInteger("soak.keywords", 100000),
+                Integer.getInteger("soak.minimumKeywordLength", 3),
+                Integer.getInteger("soak.maximumKeywordLength", 12),
+                Integer.getInteger("soak.documents", 1000),
+                Integer.getInteger("soak.documentLength", 10000),
+                Double.parseDouble(System.getProperty("soak.keywordDensity",
+                        "0.05")),
+                Integer.getInteger("soak.threads", Runtime.getRuntime()
+                        .availableProcessors()),
+                Long.getLong("soak.durationSeconds", 60),
+                Long.getLong("soak.rebuildSeconds", 15),
+                System.getProperty("soak.mode", "mixed"),
+                System.getProperty("soak.engine", "regular"),
+                Long.getLong("soak.seed", 42),
+                new File(System.getProperty("soak.output", "target/soak/soak-"
+                        + timestamp + ".json")));
+        Map<String, Object> results = harness.run();
+        harness.write(results);
+        for (Map.Entry<String, Object> result : results.entrySet()) {
+            System.out.println(result.getKey() + " = " + result.getValue());
+        }
+        System.out.println("Results written to " + harness.output);
+    }
+
+    public Map<String, Object> run() throws Exception {
+        Map<String, Object> results = new LinkedHashMap<String, Object>();
+        results.put("keywords", this.keywords);
+        results.put("minimumKeywordLength", this.minimumKeywordLength);
+        results.put("maximumKeywordLength", this.maximumKeywordLength);
+        results.put("documents", this.documents);
+        results.put("documentLength", this.documentLength);
+        results.put("keywordDensity", this.keywordDensity);
+        results.put("threads", this.threads);
+        results.put("durationSeconds", this.durationSeconds);
+        results.put("rebuildSeconds", this.rebuildSeconds);
+        results.put("mode", this.mode);
+        results.put("engine", this.engine);
+        results.put("seed", this.seed);
+        results.put("javaVersion", System.getProperty("java.version"));
+        results.put("javaVmName", System.getProperty("java.vm.name"));
+        results.put("availableProcessors", Runtime.getRuntime()
+                .availableProcessors());
+        results.put("maximumHeapBytes", Runtime.getRuntime().maxMemory());
+
+        Random random = new Random(this.seed);
+        final List<String> dictionary = generateDictionary(random);
+        final List<String> corpus = generateCorpus(random, dictionary);
+
+        long baselineHeap = usedHeapAfterGc();
+        long buildStart = System.nanoTime();
+        Trie<Integer> trie = buildTrie(dictionary, corpus);
+        long buildNanos = System.nanoTime() - buildStart;
+        long retainedHeap = usedHeapAfterGc() - baselineHeap;
+        TrieStatistics statistics = trie.getStatistics();
+        results.put("initialBuildMillis", TimeUnit.NANOSECONDS
+                .toMillis(buildNanos));
+        results.put("compiled", trie.isCompiled());
+        results.put("minimized", trie.isMinimized());
+        results.put("states", statistics.getStateCount());
+        results.put("estimatedBytes", statistics.getEstimatedBytes());
+        results.put("retainedHeapBytes", retainedHeap);
+        results.put("retainedHeapBytesPerKeyword", (double) retainedHeap
+                / this.keywords);
+
+        final TrieHolder<Integer> holder = new TrieHolder<Integer>(trie);
+        trie = null;
+        GcMonitor gcMonitor = new GcMonitor();
+        gcMonitor.start();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int i = 0; i < this.threads; i++) {
+            workers.add(new Worker(holder, corpus, i));
+        }
+        long start = System.nanoTime();
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+
+        LatencyHistogram rebuilds = new LatencyHistogram();
+        long end = start + TimeUnit.SECONDS.toNanos(this.durationSeconds);
+        long nextRebuild = start + TimeUnit.SECONDS.toNanos(this.rebuildSeconds);
+        int generation = 0;
+        // A failed rebuild must stop the workers too, or they would keep the
+        // JVM alive
+        try {
+            while (this.running && System.nanoTime() < end) {
+                long now = System.nanoTime();
+                if (this.rebuildSeconds > 0 && now >= nextRebuild) {
+                    final List<String> replacement = replaceKeywords(
+                            dictionary, new Random(this.seed + ++generation));
+                    long rebuildStart = System.nanoTime();
+                    holder.refresh(new Callable<Trie<Integer>>() {
+
+                        @Override
+                        public Trie<Integer> call() {
+                            return buildTrie(replacement, corpus);
+                        }
+
+                    }).get();
+                    rebuilds.record(System.nanoTime() - rebuildStart);
+                    nextRebuild = System.nanoTime()
+                            + TimeUnit.SECONDS.toNanos(this.rebuildSeconds);
+                } else {
+                    // Wake up regularly to notice a failed worker
+                    long wake = this.rebuildSeconds > 0 ? Math.min(end,
+                            nextRebuild) : end;
+                    Thread.sleep(Math.max(1, Math.min(100, TimeUnit.NANOSECONDS
+                            .toMillis(wake - now))));
+                }
+            }
+        } finally {
+            this.running = false;
+            for (Worker worker : workers) {
+                worker.thread.join();
+            }
+        }
+        for (Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("Worker " + worker.index
+                        + " failed", worker.failure);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        gcMonitor.stop();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        long characters = 0;
+        long allocatedBytes = 0;
+        boolean allocationMeasured = true;
+        for (Worker worker : workers) {
+            latencies.add(worker.latencies);
+            characters += worker.characters.get();
+            if (worker.allocatedBytes < 0) {
+                allocationMeasured = false;
+            }
+            allocatedBytes += worker.allocatedBytes;
+        }
+        double seconds = elapsed / 1e9;
+        results.put("elapsedSeconds", seconds);
+        results.put("operations", latencies.getCount());
+        results.put("operationsPerSecond", latencies.getCount() / seconds);
+        results.put("megabytesPerSecond", characters * 2 / seconds / 1e6);
+        results.put("latencyP50Micros", latencies.getPercentile(50) / 1000);
+        results.put("latencyP90Micros", latencies.getPercentile(90) / 1000);
+        results.put("latencyP99Micros", latencies.getPercentile(99) / 1000);
+        results.put("latencyP999Micros", latencies.getPercentile(99.9) / 1000);
+        results.put("latencyMaximumMicros", latencies.getMaximum() / 1000);
+        results.put("allocationBytesPerSecond", allocationMeasured
+                ? allocatedBytes / seconds : -1);
+        results.put("allocationBytesPerOperation", allocationMeasured
+                && latencies.getCount() > 0 ? (double) allocatedBytes
+                / latencies.getCount() : -1);
+        results.put("gcCount", gcMonitor.getCount());
+        results.put("gcTotalMillis", gcMonitor.getTotalMillis());
+        results.put("gcP99Millis", gcMonitor.getPercentileMillis(99));
+        results.put("gcMaximumMillis", gcMonitor.getMaximumMillis());
+        results.put("rebuilds", rebuilds.getCount());
+        results.put("rebuildP50Millis", rebuilds.getPercentile(50) / 1000000);
+        results.put("rebuildMaximumMillis", rebuilds.getMaximum() / 1000000);
+        results.put("liveThreads", threadBean.getThreadCount());
+        results.put("usedHeapBytesAfterRun", usedHeapAfterGc());
+        return results;
+    }
+
+    private Trie<Integer> buildTrie(List<String> dictionary,
+            List<String> corpus) {
+        Trie<Integer> trie = new Trie<Integer>().removeOverlaps();
+        for (int i = 0; i < dictionary.size(); i++) {
+            trie.addKeyword(dictionary.get(i), i);
+        }
+        trie.build();
+        if (this.engine.equals("compiled")) {
+            trie.compile();
+        } else if (this.engine.equals("optimized")) {
+            if (trie.compile()) {
+                trie.optimizeLayout(corpus);
+            }
+        } else if (this.engine.equals("minimized")) {
+            trie.minimize();
+        }
+        return trie;
+    }
+
+    private List<String> generateDictionary(Random random) {
+        List<String> dictionary = new ArrayList<String>(this.keywords);
+        for (int i = 0; i < this.keywords; i++) {
+            dictionary.add(randomWord(random, this.minimumKeywordLength
+                    + random.nextInt(this.maximumKeywordLength
+                            - this.minimumKeywordLength + 1)));
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns a copy of the dictionary with a share of its keywords replaced
+     * by new ones. The other keywords keep their ids, and the corpus, which
+     * was generated from the original dictionary, keeps matching them.
+     */
+    private List<String> replaceKeywords(List<String> dictionary,
+            Random random) {
+        List<String> replacement = new ArrayList<String>(dictionary);
+        int replaced = (int) Math.ceil(dictionary.size() * REPLACED_KEYWORDS);
+        for (int i = 0; i < replaced; i++) {
+            replacement.set(random.nextInt(replacement.size()), randomWord(
+                    random, this.minimumKeywordLength
+                            + random.nextInt(this.maximumKeywordLength
+                                    - this.minimumKeywordLength + 1)));
+        }
+        return replacement;
+    }
+
+    /**
+     * Generates documents of random words, a share of which are keywords.
+     */
+    private List<String> generateCorpus(Random random, List<String> dictionary) {
+        List<String> corpus = new ArrayList<String>(this.documents);
+        for (int i = 0; i < this.documents; i++) {
+            StringBuilder document = new StringBuilder(this.documentLength + 16);
+            while (document.length() < this.documentLength) {
+                if (random.nextDouble() < this.keywordDensity) {
+                    document.append(dictionary.get(random.nextInt(dictionary
+                            .size())));
+                } else {
+                    document.append(randomWord(random, 1 + random.nextInt(10)));
+                }
+                document.append(' ');
+            }
+            corpus.add(document.toString());
+        }
+        return corpus;
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private void write(Map<String, Object> results) throws IOException {
+        File directory = this.output.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(
+                this.output), "UTF-8");
+        try {
+            writer.write("{\n");
+            int i = 0;
+            for (Map.Entry<String, Object> result : results.entrySet()) {
+                writer.write("  " + quote(result.getKey()) + ": "
+                        + toJson(result.getValue())
+                        + (++i < results.size() ? ",\n" : "\n"));
+            }
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return the value as a JSON literal; NaN and the infinities, which JSON
+     *         has no literal for, become null
+     */
+    private static String toJson(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            return Double.isNaN(number) || Double.isInfinite(number) ? "null"
+                    : value.toString();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return quote(value.toString());
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            if (character == '"' || character == '\\') {
+                quoted.append('\\').append(character);
+            } else if (character < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) character));
+            } else {
+                quoted.append(character);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private class Worker implements Runnable {
+
+        private final Thread thread;
+
+        private final TrieHolder<Integer> holder;
+
+        private final List<String> corpus;
+
+        private final int index;
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private final AtomicLong characters = new AtomicLong();
+
+        /** the bytes allocated by the thread, or -1 if the JVM cannot tell */
+        private long allocatedBytes = -1;
+
+        /** what stopped the worker before the end of the run, if anything */
+        private Throwable failure;
+
+        Worker(TrieHolder<Integer> holder, List<String> corpus, int index) {
+            this.holder = holder;
+            this.corpus = corpus;
+            this.index = index;
+            this.thread = new Thread(this, "soak-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                work();
+            } catch (Throwable e) {
+                this.failure = e;
+                // Stop the others too; the run is failed
+                running = false;
+            }
+        }
+
+        private void work() {
+            long allocatedBefore = allocatedBytes();
+            int document = this.index % this.corpus.size();
+            long operation = 0;
+            while (running) {
+                String text = this.corpus.get(document);
+                boolean tokenize = mode.equals("tokenize")
+                        || (mode.equals("mixed") && (operation & 1) == 1);
+                long start = System.nanoTime();
+                if (tokenize) {
+                    this.holder.tokenize(text);
+                } else {
+                    this.holder.parseText(text);
+                }
+                this.latencies.record(System.nanoTime() - start);
+                this.characters.addAndGet(text.length());
+                document = (document + threads) % this.corpus.size();
+                operation++;
+            }
+            long allocatedAfter = allocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                this.allocatedBytes = allocatedAfter - allocatedBefore;
+            }
+        }
+
+        private long allocatedBytes() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+                if (hotSpotBean.isThreadAllocatedMemorySupported()
+                        && hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+                    return hotSpotBean.getThreadAllocatedBytes(Thread
+                            .currentThread().getId());
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CachingTrieTest {
+
+    @Test
+    public void repeatedTextIsServedFromCache() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 100);
+        assertEquals(0.0, cache.getHitRate());
+        Collection<Emit<Integer>> first = cache.parseText("ushers");
+        Collection<Emit<Integer>> second = cache.parseText("ushers");
+        assertEquals(3, first.size());
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedResultsAreUnmodifiable() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 100);
+        cache.parseText("ushers").clear();
+    }
+
+    @Test
+    public void truncatedResultsAreNotCached() {
+        Trie<Integer> trie = trie().limitEmits(2);
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie, 100);
+        Collection<Emit<Integer>> emits = cache.parseText("ushers");
+        assertEquals(2, emits.size());
+        assertTrue(((ParseResult<Emit<Integer>>) emits).isTruncated());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void longTextsAreNotCached() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 100,
+                1000, 4);
+        assertEquals(3, cache.parseText("ushers").size());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsBeyondMaximumSize() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 16);
+        for (int i = 0; i < 1000; i++) {
+            cache.parseText("he" + i);
+        }
+        assertTrue(cache.size() <= 16);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsBeyondMaximumWeight() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 1000,
+                16 * 10, 100);
+        for (int i = 0; i < 1000; i++) {
+            cache.parseText("she" + (1000 + i));
+        }
+        // every entry weighs 7 characters and 2 emits
+        assertTrue(cache.size() <= 16);
+    }
+
+    @Test
+    public void smallMaximumSizeIsHonoured() {
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie(), 5);
+        for (int i = 0; i < 1000; i++) {
+            cache.parseText("he" + i);
+        }
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void addingKeywordInvalidatesCachedResults() {
+        Trie<Integer> trie = trie();
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie, 100);
+        assertEquals(3, cache.parseText("ushers").size());
+        trie.addKeyword("us", 4);
+        assertEquals(4, cache.parseText("ushers").size());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(4, cache.parseText("ushers").size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void changingTimeoutInvalidatesCachedResults() {
+        Trie<Integer> trie = trie();
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie, 100);
+        cache.parseText("ushers");
+        trie.timeout(1, TimeUnit.SECONDS);
+        cache.parseText("ushers");
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void cacheHitsAreCounted() {
+        Trie<Integer> trie = trie().countHits();
+        CachingTrie<Integer> cache = new CachingTrie<Integer>(trie, 100);
+        cache.parseText("ushers");
+        cache.parseText("ushers");
+        assertEquals(2, trie.getHitCounter().getHits(0));
+        assertEquals(2, trie.getHitCounter().getHits(2));
+        assertEquals(2, trie.getHitCounter().getHits(3));
+    }
+
+    private Trie<Integer> trie() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("hers", 0);
+        trie.addKeyword("his", 1);
+        trie.addKeyword("she", 2);
+        trie.addKeyword("he", 3);
+        return trie;
+    }
+
+}
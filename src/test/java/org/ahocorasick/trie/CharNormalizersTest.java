@@ -0,0 +1,152 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CharNormalizersTest {
+
+    @Test
+    public void ignoreAccents() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("cafe", null);
+        trie.addKeyword("cr\u00e8me", null);
+        String text = "caf\u00e9 or cafe\u0301 with cr\u00e8me";
+        assertEquals("0:3=cafe 8:12=cafe 19:23=cr\u00e8me ",
+                spans(trie.parseText(text)));
+    }
+
+    @Test
+    public void keepVowelSigns() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("\u0e01\u0e34\u0e19", null);
+        trie.addKeyword("\u0915\u093f", null);
+        trie.addKeyword("\u05e9\u05b8\u05dc", null);
+        assertTrue(trie.parseText("\u0e01\u0e19 \u0915 \u05e9\u05dc").isEmpty());
+        assertEquals("0:2=\u0e01\u0e34\u0e19 4:5=\u0915\u093f 7:9=\u05e9\u05b8\u05dc ",
+                spans(trie.parseText("\u0e01\u0e34\u0e19 \u0915\u093f \u05e9\u05b8\u05dc")));
+    }
+
+    @Test
+    public void matchEndsAfterTrailingCombiningMarks() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("cafe", null);
+        String text = "le cafe\u0301\u0300 noir";
+        assertEquals("3:8=cafe ", spans(trie.parseText(text)));
+        List<Token> tokens = trie.tokenizeResult(text);
+        assertEquals(3, tokens.size());
+        assertEquals("cafe\u0301\u0300", tokens.get(1).getFragment());
+        assertEquals(" noir", tokens.get(2).getFragment());
+        Matcher<String> matcher = trie.matcher(text);
+        assertTrue(matcher.find());
+        assertEquals(8, matcher.getEnd());
+    }
+
+    @Test
+    public void matcherFollowsLongerKeywords() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("ab", null);
+        Matcher<String> matcher = trie.matcher("x a\u0301bcdefgh");
+        assertTrue(matcher.find());
+        trie.addKeyword("abcdefgh", null);
+        matcher.reset();
+        assertTrue(matcher.find());
+        assertEquals(2, matcher.getStart());
+        assertEquals(4, matcher.getEnd());
+        assertTrue(matcher.find());
+        assertEquals("abcdefgh", matcher.getKeyword());
+        assertEquals(2, matcher.getStart());
+        assertEquals(10, matcher.getEnd());
+    }
+
+    @Test
+    public void foldFullWidth() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.fullWidth()).caseInsensitive();
+        trie.addKeyword("abc1", null);
+        assertEquals("2:5=abc1 ",
+                spans(trie.parseText("x \uff21\uff42\uff43\uff11")));
+    }
+
+    @Test
+    public void collapseWhitespace() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.whitespace());
+        trie.addKeyword("new  york", null);
+        assertEquals("4:14=new  york ",
+                spans(trie.parseText("see new \t\n york")));
+    }
+
+    @Test
+    public void chainOnlyWholeWords() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.chain(CharNormalizers.fullWidth(),
+                        CharNormalizers.whitespace(),
+                        CharNormalizers.accents())).onlyWholeWords()
+                .removeOverlaps();
+        trie.addKeyword("ete", null);
+        trie.addKeyword("et\u00e9 ind", null);
+        assertEquals("0:8=et\u00e9 ind ",
+                spans(trie.parseText("e\u0301te\u3000 ind \u00e9t\u00e9s")));
+    }
+
+    @Test
+    public void keywordThatNormalizesToNothing() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        assertEquals(-1, trie.addKeyword("\u0301", null));
+    }
+
+    @Test
+    public void matcherReportsOriginalPositions() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("cafe", null);
+        trie.addKeyword("fe", null);
+        String text = "c\u00e1f\u00e9 cafe";
+        Matcher<String> matcher = trie.matcher(text);
+        Iterator<Emit<String>> expected = trie.parseText(text).iterator();
+        int count = 0;
+        while (matcher.find()) {
+            Emit<String> emit = expected.next();
+            assertEquals(emit.getStart(), matcher.getStart());
+            assertEquals(emit.getEnd(), matcher.getEnd());
+            count++;
+        }
+        assertEquals(4, count);
+        assertFalse(expected.hasNext());
+        matcher.reset();
+        assertTrue(matcher.find());
+        assertEquals(0, matcher.getStart());
+        assertTrue(matcher.find());
+        assertEquals(2, matcher.getStart());
+    }
+
+    @Test
+    public void normalizedTrieIsNotCompiled() {
+        Trie<String> trie = new Trie<String>().normalizeCharacters(
+                CharNormalizers.accents());
+        trie.addKeyword("cafe", null);
+        assertFalse(trie.compile());
+    }
+
+    private static String spans(Collection<Emit<String>> emits) {
+        StringBuilder spans = new StringBuilder();
+        for (Emit<String> emit : emits) {
+            spans.append(emit.getStart()).append(':').append(emit.getEnd())
+                    .append('=').append(emit.getKeyword()).append(' ');
+        }
+        return spans.toString();
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.ahocorasick.trie.State.StringPayload;
+import org.junit.Test;
+
+public class CompiledAutomatonTest {
+
+    @Test
+    public void compiledMatchesRegularAutomaton() {
+        Random random = new Random(37);
+        for (int round = 0; round < 50; round++) {
+            Trie<Integer> regular = new Trie<Integer>();
+            Trie<Integer> compiled = new Trie<Integer>();
+            for (int i = 0; i < 20; i++) {
+                String keyword = randomText(random, 1 + random.nextInt(5));
+                regular.addKeyword(keyword, i, i % 3);
+                compiled.addKeyword(keyword, i, i % 3);
+            }
+            assertTrue(compiled.compile());
+            String text = randomText(random, 500);
+            assertEquals(regular.parseText(text).toString(), compiled
+                    .parseText(text).toString());
+            BitSet dictionaries = new BitSet();
+            dictionaries.set(1);
+            assertEquals(regular.parseText(text, dictionaries).toString(),
+                    compiled.parseText(text, dictionaries).toString());
+            assertEquals(matches(regular, text), matches(compiled, text));
+            assertEquals(String.valueOf(regular.firstMatch(text)),
+                    String.valueOf(compiled.firstMatch(text)));
+        }
+    }
+
+    @Test
+    public void matcherRunsOnCompiledTable() {
+        Trie<String> trie = new Trie<String>().caseInsensitive()
+                .onlyWholeWords();
+        trie.addKeyword("hers", null);
+        trie.addKeyword("she", null);
+        assertTrue(trie.compile());
+        Matcher<String> matcher = trie.matcher("ushers, SHE and hers");
+        assertTrue(matcher.find());
+        assertEquals("she", matcher.getKeyword());
+        assertEquals(8, matcher.getStart());
+        assertTrue(matcher.find());
+        assertEquals(16, matcher.getStart());
+        assertFalse(matcher.find());
+        assertTrue(trie.containsAny("HERS"));
+        assertFalse(trie.containsAny("ushers"));
+    }
+
+    @Test
+    public void caseInsensitiveWithoutOverlaps() {
+        Trie<String> trie = new Trie<String>().caseInsensitive()
+                .removeOverlaps();
+        trie.addKeyword("hers", null);
+        trie.addKeyword("his", null);
+        trie.addKeyword("she", null);
+        trie.addKeyword("he", null);
+        assertTrue(trie.compile());
+        assertTrue(trie.isCompiled());
+        assertEquals("2:5=hers 11:13=his 15:17=she ",
+                spans(trie.parseText("UsHeRs and HiS sHEep")));
+    }
+
+    @Test
+    public void charactersOutsideAlphabetReturnToRoot() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("\u4e2d\u6587", null);
+        trie.addKeyword("ab", null);
+        assertTrue(trie.compile());
+        assertEquals("1:2=\u4e2d\u6587 4:5=ab ",
+                spans(trie.parseText("\u4e00\u4e2d\u6587\u4e2dab\uffff")));
+    }
+
+    @Test
+    public void honoursEmitLimit() {
+        Trie<String> trie = new Trie<String>().limitEmits(2);
+        trie.addKeyword("a", null);
+        assertTrue(trie.compile());
+        MatchBuffer buffer = trie.parseText("aaaa", new MatchBuffer());
+        assertEquals(2, buffer.size());
+        assertTrue(buffer.isTruncated());
+    }
+
+    @Test
+    public void largeAutomatonIsNotCompiled() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("abcdefgh", null);
+        assertFalse(trie.compile(8));
+        assertFalse(trie.isCompiled());
+        assertEquals(1, trie.parseText("xabcdefghx").size());
+    }
+
+    @Test
+    public void addingKeywordDiscardsCompiledTable() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("abc", null);
+        assertTrue(trie.compile());
+        trie.addKeyword("xyz", null);
+        assertFalse(trie.isCompiled());
+    }
+
+    @Test
+    public void relayoutKeepsMatches() {
+        Random random = new Random(44);
+        Trie<Integer> trie = new Trie<Integer>();
+        for (int i = 0; i < 40; i++) {
+            trie.addKeyword(randomText(random, 1 + random.nextInt(6)), i, i % 2);
+        }
+        List<String> sample = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            sample.add(randomText(random, 200));
+        }
+        String text = randomText(random, 1000);
+        assertFalse(trie.optimizeLayout(sample));
+        String expected = trie.parseText(text).toString();
+        assertTrue(trie.compile());
+        assertTrue(trie.optimizeLayout(sample));
+        assertEquals(expected, trie.parseText(text).toString());
+    }
+
+    @Test
+    public void relayoutOrdersStatesOnVisits() {
+        State<String> root = new State<String>();
+        List<StringPayload<String>> keywords = new ArrayList<StringPayload<String>>();
+        for (String keyword : new String[] { "ab", "cd" }) {
+            State<String> first = root.addState(keyword.charAt(0));
+            State<String> second = first.addState(keyword.charAt(1));
+            first.setFailure(root);
+            second.setFailure(root);
+            StringPayload<String> output = new StringPayload<String>(keyword,
+                    null, 0, keywords.size());
+            second.addEmit(output);
+            keywords.add(output);
+        }
+        CompiledAutomaton compiled = CompiledAutomaton.compile(root, keywords,
+                1000);
+        // breadth first: root, a, c, ab, cd
+        long[] visits = new long[compiled.stateCount];
+        compiled.countVisits("cdcdcdab", false, visits);
+        assertEquals(3, visits[2]);
+        assertEquals(3, visits[4]);
+        assertEquals(1, visits[1]);
+        CompiledAutomaton relaid = compiled.relayout(visits);
+        // root, c, cd, a, ab
+        int c = relaid.transitions[relaid.classOf('c')];
+        assertEquals(1, c);
+        assertEquals(2, relaid.transitions[c * relaid.width
+                + relaid.classOf('d')]);
+        assertEquals(2, relaid.firstOutputStates[2]);
+        assertEquals(3, relaid.transitions[relaid.classOf('a')]);
+    }
+
+    private static List<String> matches(Trie<Integer> trie, String text) {
+        List<String> matches = new ArrayList<String>();
+        Matcher<Integer> matcher = trie.matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.getStart() + ":" + matcher.getEnd() + "="
+                    + matcher.getKeywordId());
+        }
+        return matches;
+    }
+
+    private static String spans(Collection<Emit<String>> emits) {
+        StringBuilder spans = new StringBuilder();
+        for (Emit<String> emit : emits) {
+            spans.append(emit.getStart()).append(':').append(emit.getEnd())
+                    .append('=').append(emit.getKeyword()).append(' ');
+        }
+        return spans.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(text);
+    }
+
+}
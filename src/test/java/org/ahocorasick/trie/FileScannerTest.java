@@ -0,0 +1,223 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileScannerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("file-scanner");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        List<Path> paths = new ArrayList<Path>();
+        collect(this.directory, paths);
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Files.delete(paths.get(i));
+        }
+    }
+
+    @Test
+    public void reportsEveryFileWithByteOffsets() throws Exception {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("caf\u00e9", "coffee");
+        trie.addKeyword("tea", "tea");
+        Files.createDirectory(this.directory.resolve("sub"));
+        write("a.txt", "a caf\u00e9 and tea");
+        write("sub/b.txt", "\ud83d\ude00 tea");
+        write("c.txt", "nothing here");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            large.append("\u00fc\u00fc\u00fc\u00fc tea ");
+        }
+        write("large.txt", large.toString());
+
+        Map<String, FileScanResult<String>> results = scan(trie, 3, 1);
+
+        assertEquals(4, results.size());
+        List<Emit<String>> emits = results.get("a.txt").getEmits();
+        assertEquals(2, emits.size());
+        assertEquals(2, emits.get(0).getStart());
+        assertEquals(6, emits.get(0).getEnd());
+        assertEquals("coffee", emits.get(0).getPayload());
+        assertEquals(12, emits.get(1).getStart());
+        assertEquals(14, emits.get(1).getEnd());
+        emits = results.get("b.txt").getEmits();
+        assertEquals(5, emits.get(0).getStart());
+        assertEquals(0, results.get("c.txt").getEmits().size());
+        emits = results.get("large.txt").getEmits();
+        assertEquals(20000, emits.size());
+        assertEquals(13 * 19999 + 9, emits.get(19999).getStart());
+    }
+
+    @Test
+    public void reportsUnreadableFiles() throws Exception {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("tea", null);
+        write("a.txt", "tea");
+        final List<FileScanResult<String>> results = new ArrayList<FileScanResult<String>>();
+        new FileScanner<String>(trie, UTF_8, 1, 1).scan(
+                Arrays.asList(this.directory.resolve("a.txt"),
+                        this.directory.resolve("missing.txt")),
+                new FileScanner.ResultHandler<String>() {
+
+                    @Override
+                    public void handle(FileScanResult<String> result) {
+                        results.add(result);
+                    }
+
+                });
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).getEmits().size());
+        assertTrue(results.get(1).isFailed());
+        assertNotNull(results.get(1).getException());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rethrowsHandlerFailure() throws Exception {
+        write("a.txt", "tea");
+        new FileScanner<String>(new Trie<String>(), UTF_8).scan(
+                this.directory, new FileScanner.ResultHandler<String>() {
+
+                    @Override
+                    public void handle(FileScanResult<String> result) {
+                        throw new IllegalStateException();
+                    }
+
+                });
+    }
+
+    @Test
+    public void reportsFilesThatFailToMatch() throws Exception {
+        Trie<String> trie = new Trie<String>() {
+
+            @Override
+            public MatchBuffer parseText(String text, MatchBuffer buffer) {
+                if (text.startsWith("boom")) {
+                    throw new OutOfMemoryError("boom");
+                }
+                return super.parseText(text, buffer);
+            }
+
+        };
+        trie.addKeyword("tea", null);
+        write("a.txt", "boom tea");
+        write("b.txt", "tea");
+        write("c.txt", "boom");
+        Map<String, FileScanResult<String>> results = scan(trie, 1, 1);
+        assertEquals(3, results.size());
+        assertTrue(results.get("a.txt").isFailed());
+        assertTrue(results.get("a.txt").getException() instanceof OutOfMemoryError);
+        assertTrue(results.get("c.txt").isFailed());
+        assertEquals(1, results.get("b.txt").getEmits().size());
+    }
+
+    @Test
+    public void flagsTruncatedFiles() throws Exception {
+        Trie<String> trie = new Trie<String>().limitEmits(1);
+        trie.addKeyword("tea", null);
+        write("a.txt", "tea and tea");
+        write("b.txt", "tea");
+        Map<String, FileScanResult<String>> results = scan(trie, 2, 1);
+        assertEquals(1, results.get("a.txt").getEmits().size());
+        assertTrue(results.get("a.txt").isTruncated());
+        assertFalse(results.get("b.txt").isTruncated());
+    }
+
+    @Test
+    public void filesLargerThanPooledBuffers() throws Exception {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("tea", null);
+        StringBuilder large = new StringBuilder();
+        while (large.length() < FileScanner.MAXIMUM_POOLED_BUFFER_SIZE) {
+            large.append("\u00fc\u00fc\u00fc\u00fc ");
+        }
+        large.append("tea");
+        write("large.txt", large.toString());
+        write("small.txt", "\u00fc tea");
+        Map<String, FileScanResult<String>> results = scan(trie, 1, 1);
+        List<Emit<String>> emits = results.get("large.txt").getEmits();
+        assertEquals(1, emits.size());
+        assertEquals(large.length() / 5 * 9, emits.get(0).getStart());
+        assertEquals(3, results.get("small.txt").getEmits().get(0).getStart());
+    }
+
+    @Test(expected = AssertionError.class)
+    public void rethrowsHandlerError() throws Exception {
+        write("a.txt", "tea");
+        new FileScanner<String>(new Trie<String>(), UTF_8).scan(
+                this.directory, new FileScanner.ResultHandler<String>() {
+
+                    @Override
+                    public void handle(FileScanResult<String> result) {
+                        throw new AssertionError();
+                    }
+
+                });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCharsetWithoutByteOffsets() {
+        new FileScanner<String>(new Trie<String>(),
+                Charset.forName("UTF-16"));
+    }
+
+    private Map<String, FileScanResult<String>> scan(Trie<String> trie,
+            int workers, int queueCapacity) throws Exception {
+        final Map<String, FileScanResult<String>> results = new ConcurrentHashMap<String, FileScanResult<String>>();
+        new FileScanner<String>(trie, UTF_8, workers, queueCapacity).scan(
+                this.directory, new FileScanner.ResultHandler<String>() {
+
+                    @Override
+                    public void handle(FileScanResult<String> result) {
+                        results.put(result.getPath().getFileName()
+                                .toString(), result);
+                    }
+
+                });
+        return results;
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.write(this.directory.resolve(name), text.getBytes(UTF_8));
+    }
+
+    private static void collect(Path path, List<Path> paths)
+            throws IOException {
+        paths.add(path);
+        if (Files.isDirectory(path)) {
+            DirectoryStream<Path> children = Files.newDirectoryStream(path);
+            try {
+                for (Path child : children) {
+                    collect(child, paths);
+                }
+            } finally {
+                children.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class IntPayloadTrieTest {
+
+    @Test
+    public void payloadsByEmit() {
+        IntPayloadTrie trie = new IntPayloadTrie();
+        trie.addKeyword("hers", 10);
+        trie.addKeyword("she", 20);
+        trie.addKeyword("he", 30);
+        Collection<Emit<Void>> emits = trie.parseText("ushers");
+        assertEquals(3, emits.size());
+        Iterator<Emit<Void>> it = emits.iterator();
+        assertEquals(20, trie.getPayload(it.next()));
+        assertEquals(30, trie.getPayload(it.next()));
+        assertEquals(10, trie.getPayload(it.next()));
+    }
+
+    @Test
+    public void payloadsByKeywordId() {
+        IntPayloadTrie trie = new IntPayloadTrie().caseInsensitive()
+                .removeOverlaps();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, trie.addKeyword("keyword" + i, -i));
+        }
+        assertEquals(-1, trie.addKeyword("", 42));
+        assertEquals(100, trie.getKeywordCount());
+        Emit<Void> emit = trie.parseText("KEYWORD42").iterator().next();
+        assertEquals(42, emit.getKeywordId());
+        assertEquals(-42, trie.getPayload(emit.getKeywordId()));
+    }
+
+    @Test
+    public void configurationChains() {
+        IntPayloadTrie trie = new IntPayloadTrie().limitEmits(1)
+                .timeout(1, TimeUnit.SECONDS)
+                .normalizeCharacters(CharNormalizers.accents())
+                .cacheTransitions(64).countHits();
+        trie.addKeyword("cafe", 7);
+        assertEquals(7, trie.getPayload(trie.parseText("caf\u00e9")
+                .iterator().next()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void keywordsNeedAnIntPayload() {
+        new IntPayloadTrie().addKeyword("he", (Void) null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void unknownKeywordIdHasNoPayload() {
+        IntPayloadTrie trie = new IntPayloadTrie();
+        trie.addKeyword("he", 1);
+        trie.getPayload(1);
+    }
+
+}
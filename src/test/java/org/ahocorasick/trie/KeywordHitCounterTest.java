@@ -0,0 +1,118 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class KeywordHitCounterTest {
+
+    @Test
+    public void countsMatchesPerKeyword() {
+        Trie<String> trie = new Trie<String>();
+        int hers = trie.addKeyword("hers", null);
+        int he = trie.addKeyword("he", null);
+        int dead = trie.addKeyword("unused", null);
+        assertNull(trie.getHitCounter());
+        trie.countHits();
+        trie.parseText("ushers");
+        trie.tokenize("he he");
+        Matcher<String> matcher = trie.matcher("hers");
+        while (matcher.find()) {
+        }
+        long[] hits = trie.getHitCounter().snapshot();
+        assertEquals(2, hits[hers]);
+        assertEquals(4, hits[he]);
+        assertEquals(0, hits[dead]);
+    }
+
+    @Test
+    public void countsAfterOverlapRemoval() {
+        Trie<String> trie = new Trie<String>().removeOverlaps();
+        trie.addKeyword("hers", null);
+        trie.addKeyword("he", null);
+        trie.countHits();
+        trie.parseText("ushers");
+        assertEquals(1, trie.getHitCounter().getHits(0));
+        assertEquals(0, trie.getHitCounter().getHits(1));
+    }
+
+    @Test
+    public void snapshotAndReset() {
+        KeywordHitCounter counter = new KeywordHitCounter(3, 3);
+        counter.increment(1);
+        counter.increment(1);
+        counter.increment(7);
+        assertEquals(2, counter.snapshotAndReset()[1]);
+        assertEquals(0, counter.getHits(1));
+        counter.increment(2);
+        counter.reset();
+        assertEquals(0, counter.snapshot()[2]);
+    }
+
+    @Test
+    public void exactUnderConcurrentCounting() throws Exception {
+        final KeywordHitCounter counter = new KeywordHitCounter(4, 2);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment(j & 3);
+                    }
+                }
+
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (long hits : counter.snapshot()) {
+            assertEquals(20000, hits);
+        }
+    }
+
+    @Test
+    public void stripesAreCreatedOnlyUnderContention() throws Exception {
+        final KeywordHitCounter counter = new KeywordHitCounter(1000, 4);
+        assertEquals(1, counter.getStripeCount());
+        for (int i = 0; i < 100000; i++) {
+            counter.increment(i % 1000);
+        }
+        assertEquals(1, counter.getStripeCount());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment(0);
+                    }
+                }
+
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(counter.getStripeCount() <= 4);
+        assertEquals(1600100, counter.getHits(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stripesMustBePositive() {
+        new KeywordHitCounter(1, 0);
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class LongPayloadTrieTest {
+
+    @Test
+    public void payloadsBeyondIntRange() {
+        LongPayloadTrie trie = new LongPayloadTrie().onlyWholeWords();
+        trie.addKeyword("alpha", Long.MAX_VALUE);
+        trie.addKeyword("beta", 1L << 40);
+        Iterator<Emit<Void>> it = trie.parseText("alpha betamax beta")
+                .iterator();
+        assertEquals(Long.MAX_VALUE, trie.getPayload(it.next()));
+        assertEquals(1L << 40, trie.getPayload(it.next()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void negativeKeywordIdHasNoPayload() {
+        LongPayloadTrie trie = new LongPayloadTrie().limitTextLength(10)
+                .build();
+        trie.getPayload(-1);
+    }
+
+}
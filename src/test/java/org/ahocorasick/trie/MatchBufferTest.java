@@ -0,0 +1,180 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MatchBufferTest {
+
+    @Test
+    public void parseIntoBuffer() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("hers", 0);
+        trie.addKeyword("his", 1);
+        trie.addKeyword("she", 2);
+        trie.addKeyword("he", 3);
+        MatchBuffer buffer = new MatchBuffer(1);
+        assertSame(buffer, trie.parseText("ushers", buffer));
+        assertEquals(3, buffer.size());
+        checkMatch(buffer, 0, 1, 3, 2);
+        checkMatch(buffer, 1, 2, 3, 3);
+        checkMatch(buffer, 2, 2, 5, 0);
+        assertEquals("hers", trie.getKeyword(buffer.getKeywordId(2)));
+        assertEquals(Integer.valueOf(0),
+                trie.getKeywordPayload(buffer.getKeywordId(2)));
+    }
+
+    @Test
+    public void bufferIsReplacedOnEveryParse() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("he", 0);
+        MatchBuffer buffer = new MatchBuffer();
+        trie.parseText("he he he", buffer);
+        assertEquals(3, buffer.size());
+        trie.parseText("she", buffer);
+        assertEquals(1, buffer.size());
+        checkMatch(buffer, 0, 1, 2, 0);
+    }
+
+    @Test
+    public void selectedDictionaries() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("apple", 0, 0);
+        trie.addKeyword("apple", 1, 1);
+        BitSet dictionaries = new BitSet();
+        dictionaries.set(1);
+        MatchBuffer buffer = trie.parseText("apple", dictionaries,
+                new MatchBuffer());
+        assertEquals(1, buffer.size());
+        checkMatch(buffer, 0, 0, 4, 1);
+        assertEquals(1, trie.getKeywordDictionary(1));
+    }
+
+    @Test
+    public void removePartialMatchesAndOverlaps() {
+        Trie<Integer> trie = new Trie<Integer>().onlyWholeWords()
+                .removeOverlaps().caseInsensitive();
+        trie.addKeyword("hot", 0);
+        trie.addKeyword("hot chocolate", 1);
+        trie.addKeyword("chocolate", 2);
+        MatchBuffer buffer = new MatchBuffer();
+        trie.parseText("HOT CHOCOLATE, hotter chocolate", buffer);
+        assertEquals(2, buffer.size());
+        checkMatch(buffer, 0, 0, 12, 1);
+        checkMatch(buffer, 1, 22, 30, 2);
+    }
+
+    @Test
+    public void stopsAtMaximumEmits() {
+        Trie<Integer> trie = new Trie<Integer>().limitEmits(5);
+        trie.addKeyword("he", 0);
+        trie.addKeyword("hehe", 1);
+        MatchBuffer buffer = trie.parseText(repeat("he", 10000),
+                new MatchBuffer());
+        assertEquals(5, buffer.size());
+        assertTrue(buffer.isTruncated());
+        trie.parseText("he", buffer);
+        assertFalse(buffer.isTruncated());
+    }
+
+    @Test
+    public void reachingMaximumEmitsIsNotTruncation() {
+        Trie<Integer> trie = new Trie<Integer>().limitEmits(2);
+        trie.addKeyword("he", 0);
+        ParseResult<Emit<Integer>> emits = trie.parseResult("he he");
+        assertEquals(2, emits.size());
+        assertFalse(emits.isTruncated());
+        emits = trie.parseResult("he he he");
+        assertEquals(2, emits.size());
+        assertTrue(emits.isTruncated());
+    }
+
+    @Test
+    public void collectionResultsAreFlaggedWhenTruncated() {
+        Trie<Integer> trie = new Trie<Integer>().limitEmits(1);
+        trie.addKeyword("he", 0);
+        ParseResult<Token> tokens = trie.tokenizeResult("he and he");
+        assertTrue(tokens.isTruncated());
+        assertEquals(2, tokens.size());
+        assertEquals(" and he", tokens.get(1).getFragment());
+        assertFalse(trie.parseResult("he").isTruncated());
+    }
+
+    @Test
+    public void subMillisecondTimeoutIsHonoured() {
+        Trie<Integer> trie = new Trie<Integer>().timeout(1,
+                TimeUnit.NANOSECONDS);
+        trie.addKeyword("he", 0);
+        ParseResult<Emit<Integer>> emits = trie.parseResult(repeat("he", 100000));
+        assertTrue(emits.isTruncated());
+        assertTrue(emits.size() < 100000);
+    }
+
+    @Test
+    public void collectionResultsStopWhenCancelled() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("he", 0);
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        String text = repeat("he", 100000);
+        assertTrue(trie.parseResult(text, null, cancellation).isTruncated());
+        assertTrue(trie.tokenizeResult(text, null, cancellation).isTruncated());
+        assertFalse(trie.parseResult(text, null, new CancellationToken())
+                .isTruncated());
+    }
+
+    @Test
+    public void stopsAtMaximumTextLength() {
+        Trie<Integer> trie = new Trie<Integer>().limitTextLength(5);
+        trie.addKeyword("he", 0);
+        MatchBuffer buffer = trie.parseText("he he he", new MatchBuffer());
+        assertEquals(2, buffer.size());
+        assertTrue(buffer.isTruncated());
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        Trie<Integer> trie = new Trie<Integer>().removeOverlaps();
+        trie.addKeyword("he", 0);
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        MatchBuffer buffer = trie.parseText(repeat("he", 100000), null,
+                new MatchBuffer(), cancellation);
+        assertTrue(buffer.isTruncated());
+        assertTrue(buffer.size() < 100000);
+        assertEquals(buffer.size() * 2 - 2,
+                buffer.getStart(buffer.size() - 1));
+    }
+
+    @Test
+    public void stopsWhenDeadlinePassed() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("he", 0);
+        MatchBuffer buffer = trie.parseText(repeat("he", 100000), null,
+                new MatchBuffer(), new CancellationToken(0, TimeUnit.SECONDS));
+        assertTrue(buffer.isTruncated());
+        assertTrue(buffer.size() < 100000);
+    }
+
+    private String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    private void checkMatch(MatchBuffer buffer, int index, int expectedStart,
+            int expectedEnd, int expectedKeywordId) {
+        assertEquals(expectedStart, buffer.getStart(index));
+        assertEquals(expectedEnd, buffer.getEnd(index));
+        assertEquals(expectedKeywordId, buffer.getKeywordId(index));
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class MatchIteratorTest {
+
+    @Test
+    public void iteratesLikeParseText() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("hers", null);
+        trie.addKeyword("his", null);
+        trie.addKeyword("she", null);
+        trie.addKeyword("he", null);
+        String text = "ushers and his sheep";
+        StringBuilder iterated = new StringBuilder();
+        for (Emit<String> emit : trie.matches(text)) {
+            iterated.append(emit.getStart()).append(':')
+                    .append(emit.getEnd()).append(' ');
+        }
+        StringBuilder parsed = new StringBuilder();
+        for (Emit<String> emit : trie.parseText(text)) {
+            parsed.append(emit.getStart()).append(':').append(emit.getEnd())
+                    .append(' ');
+        }
+        assertEquals(parsed.toString(), iterated.toString());
+    }
+
+    @Test
+    public void scansOnlyAsFarAsPulled() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("ab", null);
+        CountingSequence text = new CountingSequence("xxab" + "ab ab ab ab ab");
+        Iterator<Emit<String>> iterator = trie.matches(text).iterator();
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertEquals(2, iterator.next().getStart());
+        assertTrue(text.reads <= 5);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextPastEnd() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("ab", null);
+        Iterator<Emit<String>> iterator = trie.matches("ab").iterator();
+        iterator.next();
+        assertFalse(iterator.hasNext());
+        iterator.next();
+    }
+
+    @Test
+    public void containsAny() {
+        Trie<String> trie = new Trie<String>().caseInsensitive()
+                .onlyWholeWords();
+        trie.addKeyword("spam", null, 0);
+        trie.addKeyword("scam", null, 1);
+        assertTrue(trie.containsAny("this is SPAM"));
+        assertFalse(trie.containsAny("spammer"));
+        BitSet dictionaries = new BitSet();
+        dictionaries.set(1);
+        assertFalse(trie.containsAny("this is spam", dictionaries));
+        assertTrue(trie.containsAny("this is a scam", dictionaries));
+    }
+
+    @Test
+    public void firstMatch() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("she", "pronoun");
+        trie.addKeyword("he", "pronoun");
+        trie.addKeyword("sheep", "animal");
+        Emit<String> first = trie.firstMatch("the sheep");
+        assertEquals(1, first.getStart());
+        assertEquals("he", first.getKeyword());
+        first = trie.firstMatch("a sheep");
+        assertEquals("she", first.getKeyword());
+        assertNull(trie.firstMatch("a goat"));
+    }
+
+    private static class CountingSequence implements CharSequence {
+
+        private final String text;
+
+        private int reads = 0;
+
+        CountingSequence(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return this.text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            this.reads++;
+            return this.text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.text.subSequence(start, end);
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class MatcherTest {
+
+    @Test
+    public void findsSameMatchesAsParseText() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("hers", 0);
+        trie.addKeyword("his", 1);
+        trie.addKeyword("she", 2);
+        trie.addKeyword("he", 3);
+        String text = "ushers and his sheep";
+        Matcher<Integer> matcher = trie.matcher(text);
+        Iterator<Emit<Integer>> expected = trie.parseText(text).iterator();
+        while (matcher.find()) {
+            Emit<Integer> emit = expected.next();
+            assertEquals(emit.getStart(), matcher.getStart());
+            assertEquals(emit.getEnd(), matcher.getEnd());
+            assertEquals(emit.getKeyword(), matcher.getKeyword());
+            assertEquals(emit.getPayload(), matcher.getPayload());
+        }
+        assertFalse(expected.hasNext());
+    }
+
+    @Test
+    public void resetToNextText() {
+        Trie<Integer> trie = new Trie<Integer>().caseInsensitive();
+        trie.addKeyword("error", 0);
+        Matcher<Integer> matcher = trie.matcher("no problem");
+        assertFalse(matcher.find());
+        matcher.reset("ERROR: disk full");
+        assertTrue(matcher.find());
+        assertEquals(0, matcher.getStart());
+        assertEquals(4, matcher.getEnd());
+        assertFalse(matcher.find());
+        matcher.reset();
+        assertTrue(matcher.find());
+    }
+
+    @Test
+    public void onlyWholeWordsOfSelectedDictionaries() {
+        Trie<Integer> trie = new Trie<Integer>().onlyWholeWords();
+        trie.addKeyword("sugar", 0, 0);
+        trie.addKeyword("cane", 1, 1);
+        BitSet dictionaries = new BitSet();
+        dictionaries.set(0);
+        Matcher<Integer> matcher = trie.matcher(
+                "sugarcane cane sugar canesugar", dictionaries);
+        assertTrue(matcher.find());
+        assertEquals(15, matcher.getStart());
+        assertEquals("sugar", matcher.toEmit().getKeyword());
+        assertFalse(matcher.find());
+    }
+
+    @Test
+    public void resetPicksUpAddedKeywords() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("he", 0);
+        Matcher<Integer> matcher = trie.matcher("she");
+        assertTrue(matcher.find());
+        trie.addKeyword("she", 1);
+        trie.addKeyword("hx", 2);
+        matcher.reset("she xyz");
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        assertEquals(trie.parseText("she xyz").size(), count);
+        assertEquals(2, count);
+        matcher.reset("hxyz a");
+        assertTrue(matcher.find());
+        assertEquals("hx", matcher.getKeyword());
+        assertFalse(matcher.find());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noMatchBeforeFind() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("he", 0);
+        trie.matcher("he").getStart();
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MinimizedAutomatonTest {
+
+    private static final String[] SUFFIXES = { "", "s", "ed", "er", "ers",
+            "ing", "ings", "ation", "ations", "able", "ness", "ment",
+            "ments" };
+
+    @Test
+    public void minimizedMatchesRegularAutomaton() {
+        Random random = new Random(28);
+        for (int round = 0; round < 50; round++) {
+            Trie<Integer> regular = new Trie<Integer>();
+            Trie<Integer> minimized = new Trie<Integer>();
+            for (int i = 0; i < 30; i++) {
+                String keyword = randomText(random, 1 + random.nextInt(3))
+                        + SUFFIXES[random.nextInt(SUFFIXES.length)];
+                regular.addKeyword(keyword, i, i % 3);
+                minimized.addKeyword(keyword, i, i % 3);
+            }
+            assertTrue(minimized.minimize());
+            String text = randomText(random, 500);
+            assertEquals(regular.parseText(text).toString(), minimized
+                    .parseText(text).toString());
+            BitSet dictionaries = new BitSet();
+            dictionaries.set(1);
+            assertEquals(regular.parseText(text, dictionaries).toString(),
+                    minimized.parseText(text, dictionaries).toString());
+            assertEquals(matches(regular, text), matches(minimized, text));
+        }
+    }
+
+    @Test
+    public void sharedSuffixesShrinkStateCount() {
+        Random random = new Random(28);
+        Trie<String> trie = new Trie<String>();
+        List<String> keywords = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            String stem = randomText(random, 4 + random.nextInt(4));
+            for (String suffix : SUFFIXES) {
+                trie.addKeyword(stem + suffix, null);
+                keywords.add(stem + suffix);
+            }
+        }
+        int regularStates = trie.getStatistics().getStateCount();
+        String text = randomText(random, 20000) + keywords;
+        String expected = trie.parseText(text).toString();
+        assertTrue(trie.minimize());
+        TrieStatistics statistics = trie.getStatistics();
+        assertTrue(statistics.isMinimized());
+        assertTrue(statistics.getStateCount() * 3 < regularStates);
+        assertEquals(expected, trie.parseText(text).toString());
+    }
+
+    @Test
+    public void keywordsInsideKeywords() {
+        Trie<String> trie = new Trie<String>().caseInsensitive();
+        for (String keyword : new String[] { "he", "she", "his", "hers",
+                "nation", "station", "ion", "at", "tat" }) {
+            trie.addKeyword(keyword, null);
+        }
+        String text = "UsHeRs at the StAtIoN of the NATION";
+        String expected = trie.parseText(text).toString();
+        assertTrue(trie.minimize());
+        assertEquals(expected, trie.parseText(text).toString());
+    }
+
+    @Test
+    public void wholeWordsAndOverlaps() {
+        Trie<String> trie = new Trie<String>().onlyWholeWords()
+                .removeOverlaps();
+        trie.addKeyword("walking", "walk");
+        trie.addKeyword("talking", "talk");
+        trie.addKeyword("king", "king");
+        assertTrue(trie.minimize());
+        MatchBuffer buffer = trie.parseText("talking walking king talking",
+                new MatchBuffer());
+        assertEquals(4, buffer.size());
+        assertEquals(1, buffer.getKeywordId(0));
+        assertEquals(0, buffer.getKeywordId(1));
+        assertEquals(2, buffer.getKeywordId(2));
+        assertEquals(1, buffer.getKeywordId(3));
+        assertEquals(16, buffer.getStart(2));
+        assertEquals(19, buffer.getEnd(2));
+    }
+
+    @Test
+    public void minimizedTrieIsFrozen() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("abc", null);
+        assertTrue(trie.minimize());
+        assertTrue(trie.isMinimized());
+        assertFalse(trie.compile());
+        try {
+            trie.addKeyword("xyz", null);
+            throw new AssertionError("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void normalizingTrieIsNotMinimized() {
+        Trie<String> trie = new Trie<String>()
+                .normalizeCharacters(CharNormalizers.accents());
+        trie.addKeyword("abc", null);
+        assertFalse(trie.minimize());
+        assertEquals(1, trie.parseText("xabcx").size());
+    }
+
+    private static List<String> matches(Trie<Integer> trie, String text) {
+        List<String> matches = new ArrayList<String>();
+        Matcher<Integer> matcher = trie.matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.getStart() + ":" + matcher.getEnd() + "="
+                    + matcher.getKeywordId());
+        }
+        return matches;
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(6));
+        }
+        return new String(text);
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SegmenterTest {
+
+    @Test
+    public void maximumMatchingBeatsLongestFirst() {
+        Trie<String> trie = new Trie<String>();
+        for (String word : new String[] { "\u7814\u7a76", "\u7814\u7a76\u751f",
+                "\u751f\u547d", "\u8d77\u6e90" }) {
+            trie.addKeyword(word, null);
+        }
+        // research / life / origin: the longest match "graduate student"
+        // would leave the characters of "life" uncovered
+        String text = "\u7814\u7a76\u751f\u547d\u8d77\u6e90";
+        assertEquals("[\u7814\u7a76] [\u751f\u547d] [\u8d77\u6e90] ",
+                segments(Segmenter.maximumMatching(trie).segment(text)));
+    }
+
+    @Test
+    public void minimumSegments() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("ab", null);
+        trie.addKeyword("bcd", null);
+        trie.addKeyword("a", null);
+        trie.addKeyword("cd", null);
+        assertEquals("[a] [bcd] ",
+                segments(Segmenter.minimumSegments(trie).segment("abcd")));
+    }
+
+    @Test
+    public void fragmentsBetweenKeywords() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("cd", null);
+        trie.addKeyword("g", null);
+        List<Token> tokens = Segmenter.maximumMatching(trie).segment(
+                "abcdefgh");
+        assertEquals("ab [cd] ef [g] h ", segments(tokens));
+        assertFalse(tokens.get(0).isMatch());
+        assertTrue(tokens.get(1).isMatch());
+        assertEquals(2, tokens.get(1).getEmit().getStart());
+        assertEquals(3, tokens.get(1).getEmit().getEnd());
+    }
+
+    @Test
+    public void weightedByPayload() {
+        Trie<Double> trie = new Trie<Double>();
+        trie.addKeyword("ab", 1.0);
+        trie.addKeyword("bc", 5.0);
+        Segmenter<Double> segmenter = new Segmenter<Double>(trie,
+                new Segmenter.Weigher<Double>() {
+
+                    @Override
+                    public double weigh(String keyword, Double payload) {
+                        return payload;
+                    }
+
+                });
+        assertEquals("a [bc] ", segments(segmenter.segment("abc")));
+    }
+
+    @Test
+    public void textWithoutKeywords() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("x", null);
+        assertEquals("abc ", segments(Segmenter.maximumMatching(trie)
+                .segment("abc")));
+        assertTrue(Segmenter.maximumMatching(trie).segment("").isEmpty());
+    }
+
+    private static String segments(List<Token> tokens) {
+        StringBuilder segments = new StringBuilder();
+        for (Token token : tokens) {
+            segments.append(token.isMatch() ? "[" + token.getFragment() + "]"
+                    : token.getFragment()).append(' ');
+        }
+        return segments.toString();
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenTrieTest {
+
+    private final Map<String, Integer> vocabulary = new HashMap<String, Integer>();
+
+    @Test
+    public void findsPhrasesInTokenAndCharacterOffsets() {
+        TokenTrie<String> trie = new TokenTrie<String>();
+        trie.addPhrase(tokens("new york"), "city");
+        trie.addPhrase(tokens("new york times"), "newspaper");
+        trie.addPhrase(tokens("york"), "city");
+        String text = "the new york times in new yorkshire";
+        List<TokenEmit<String>> emits = parse(trie, text);
+        // "yorkshire" is a different token, so "new york" matches only once
+        assertEquals(3, emits.size());
+        assertEquals("4:11=1..2#0", emits.get(0).toString());
+        assertEquals("8:11=2..2#2", emits.get(1).toString());
+        assertEquals("4:17=1..3#1", emits.get(2).toString());
+        assertEquals("newspaper", emits.get(2).getPayload());
+        // one state per word: root, new, new york, new york times, york
+        assertEquals(5, trie.getStateCount());
+    }
+
+    @Test
+    public void removeOverlaps() {
+        TokenTrie<String> trie = new TokenTrie<String>().removeOverlaps();
+        trie.addPhrase(tokens("new york"), null);
+        trie.addPhrase(tokens("new york times"), null);
+        trie.addPhrase(tokens("times square"), null);
+        List<TokenEmit<String>> emits = parse(trie,
+                "new york times square");
+        assertEquals(1, emits.size());
+        assertEquals(1, emits.get(0).getPhraseId());
+    }
+
+    @Test
+    public void failureLinks() {
+        TokenTrie<Integer> trie = new TokenTrie<Integer>();
+        trie.addPhrase(new int[] { 1, 2, 3, 4 }, 0);
+        trie.addPhrase(new int[] { 2, 3 }, 1);
+        trie.addPhrase(new int[] { 3, 5 }, 2);
+        MatchBuffer buffer = trie.parseTokens(new int[] { 1, 2, 3, 5, 1, 2,
+                3, 4 }, 8, new MatchBuffer());
+        assertEquals(4, buffer.size());
+        assertEquals(1, buffer.getKeywordId(0));
+        assertEquals(2, buffer.getKeywordId(1));
+        assertEquals(2, buffer.getStart(1));
+        assertEquals(3, buffer.getEnd(1));
+        assertEquals(1, buffer.getKeywordId(2));
+        assertEquals(0, buffer.getKeywordId(3));
+        assertEquals(4, buffer.getStart(3));
+    }
+
+    @Test
+    public void matchesCharacterTrieOnSingleCharacterTokens() {
+        Random random = new Random(42);
+        TokenTrie<Integer> tokenTrie = new TokenTrie<Integer>();
+        Trie<Integer> trie = new Trie<Integer>();
+        for (int i = 0; i < 200; i++) {
+            int[] phrase = new int[1 + random.nextInt(5)];
+            char[] keyword = new char[phrase.length];
+            for (int j = 0; j < phrase.length; j++) {
+                phrase[j] = random.nextInt(3);
+                keyword[j] = (char) ('a' + phrase[j]);
+            }
+            tokenTrie.addPhrase(phrase, i);
+            trie.addKeyword(new String(keyword), i);
+        }
+        int[] tokens = new int[1000];
+        char[] text = new char[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = random.nextInt(3);
+            text[i] = (char) ('a' + tokens[i]);
+        }
+        MatchBuffer expected = trie.parseText(new String(text),
+                new MatchBuffer());
+        MatchBuffer actual = tokenTrie.parseTokens(tokens, tokens.length,
+                new MatchBuffer());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getStart(i), actual.getStart(i));
+            assertEquals(expected.getEnd(i), actual.getEnd(i));
+        }
+    }
+
+    private int[] tokens(String text) {
+        String[] words = text.split(" ");
+        int[] tokens = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            Integer token = this.vocabulary.get(words[i]);
+            if (token == null) {
+                token = this.vocabulary.size();
+                this.vocabulary.put(words[i], token);
+            }
+            tokens[i] = token;
+        }
+        return tokens;
+    }
+
+    private <T> List<TokenEmit<T>> parse(TokenTrie<T> trie, String text) {
+        List<Integer> starts = new ArrayList<Integer>();
+        int start = 0;
+        for (String word : text.split(" ")) {
+            starts.add(start);
+            start += word.length() + 1;
+        }
+        int[] tokens = tokens(text);
+        int[] characterStarts = new int[tokens.length];
+        int[] characterEnds = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            characterStarts[i] = starts.get(i);
+            characterEnds[i] = (i + 1 < tokens.length ? starts.get(i + 1) - 1
+                    : text.length()) - 1;
+        }
+        return trie.parseTokens(tokens, characterStarts, characterEnds);
+    }
+
+}
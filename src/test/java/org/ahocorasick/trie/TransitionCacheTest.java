@@ -0,0 +1,83 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TransitionCacheTest {
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new TransitionCache<String>(1).capacity());
+        assertEquals(8, new TransitionCache<String>(5).capacity());
+        assertEquals(16, new TransitionCache<String>(16).capacity());
+    }
+
+    @Test
+    public void cachesAndClears() {
+        TransitionCache<String> cache = new TransitionCache<String>(16);
+        State<String> from = new State<String>();
+        State<String> to = from.addState('a');
+        assertNull(cache.get(from, 'a'));
+        cache.put(from, 'a', to);
+        assertSame(to, cache.get(from, 'a'));
+        assertNull(cache.get(from, 'b'));
+        assertNull(cache.get(to, 'a'));
+        cache.clear();
+        assertNull(cache.get(from, 'a'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new TransitionCache<String>(0);
+    }
+
+    @Test
+    public void cachedTrieMatchesUncachedTrie() {
+        Random random = new Random(38);
+        Trie<Integer> uncached = new Trie<Integer>();
+        // a tiny cache, so that transitions keep replacing each other
+        Trie<Integer> cached = new Trie<Integer>().cacheTransitions(4);
+        for (int i = 0; i < 50; i++) {
+            String keyword = randomText(random, 1 + random.nextInt(6));
+            uncached.addKeyword(keyword, i);
+            cached.addKeyword(keyword, i);
+        }
+        for (int round = 0; round < 20; round++) {
+            String text = randomText(random, 300);
+            assertEquals(uncached.parseText(text).toString(), cached
+                    .parseText(text).toString());
+        }
+        cached.clearTransitionCache();
+        String text = randomText(random, 300);
+        assertEquals(uncached.parseText(text).toString(), cached
+                .parseText(text).toString());
+    }
+
+    @Test
+    public void matcherUsesCache() {
+        Trie<String> trie = new Trie<String>().cacheTransitions(64);
+        trie.addKeyword("hers", null);
+        trie.addKeyword("his", null);
+        trie.addKeyword("she", null);
+        Matcher<String> matcher = trie.matcher("ushers");
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(text);
+    }
+
+}
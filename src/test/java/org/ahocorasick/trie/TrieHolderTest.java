@@ -0,0 +1,187 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TrieHolderTest {
+
+    @Test
+    public void refreshReplacesTrie() throws Exception {
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"));
+        assertEquals(1, holder.parseText("she sells").size());
+        Future<Trie<Integer>> future = holder.refresh(builder("sells"));
+        assertSame(future.get(), holder.get());
+        Emit<Integer> emit = holder.parseText("she sells").iterator().next();
+        assertEquals("sells", emit.getKeyword());
+    }
+
+    @Test
+    public void failedRefreshKeepsCurrentTrie() throws Exception {
+        Trie<Integer> initial = trie("she");
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(initial);
+        Future<Trie<Integer>> future = holder
+                .refresh(new Callable<Trie<Integer>>() {
+                    @Override
+                    public Trie<Integer> call() {
+                        throw new IllegalStateException("dictionary broken");
+                    }
+                });
+        try {
+            future.get();
+            fail("Refresh should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+        assertSame(initial, holder.get());
+    }
+
+    @Test
+    public void laterRefreshWinsOverSlowerEarlierOne() throws Exception {
+        DeferredExecutor executor = new DeferredExecutor();
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"),
+                executor);
+        holder.refresh(builder("sells"));
+        Runnable slow = executor.deferred;
+        holder.refresh(builder("shells")).get();
+        slow.run();
+        assertEquals("shells", holder.parseText("shells").iterator().next()
+                .getKeyword());
+    }
+
+    @Test
+    public void newerRefreshCancelsPendingOnes() throws Exception {
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Trie<Integer>> running = holder
+                .refresh(new Callable<Trie<Integer>>() {
+                    @Override
+                    public Trie<Integer> call() throws InterruptedException {
+                        started.countDown();
+                        release.await();
+                        return trie("sells");
+                    }
+                });
+        started.await();
+        Future<Trie<Integer>> pending = holder.refresh(builder("sea"));
+        Future<Trie<Integer>> latest = holder.refresh(builder("shells"));
+        assertTrue(running.isCancelled());
+        assertTrue(pending.isCancelled());
+        assertSame(latest.get(), holder.get());
+        assertEquals("shells", holder.parseText("shells").iterator().next()
+                .getKeyword());
+    }
+
+    @Test
+    public void refreshFromSerializedTrie() throws Exception {
+        File file = File.createTempFile("trie", ".ser");
+        file.deleteOnExit();
+        ObjectOutputStream output = new ObjectOutputStream(
+                new FileOutputStream(file));
+        output.writeObject(trie("seashore"));
+        output.close();
+
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"));
+        holder.refresh(file).get();
+        assertEquals("seashore", holder.parseText("by the seashore")
+                .iterator().next().getKeyword());
+    }
+
+    @Test
+    public void refreshFromLargeSerializedTrie() throws Exception {
+        Random random = new Random(32);
+        Trie<Integer> large = new Trie<Integer>();
+        for (int i = 0; i < 200000; i++) {
+            large.addKeyword(randomText(random, 4 + random.nextInt(12)), i);
+        }
+        large.addKeyword("seashore", -1);
+        String text = randomText(random, 10000) + " by the seashore";
+        String expected = large.parseText(text).toString();
+
+        File file = write(large);
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"));
+        holder.refresh(file).get();
+        assertEquals(expected, holder.parseText(text).toString());
+    }
+
+    @Test
+    public void refreshFromSerializedMinimizedTrie() throws Exception {
+        Trie<Integer> minimized = new Trie<Integer>().caseInsensitive();
+        minimized.addKeyword("seashore", 0);
+        minimized.addKeyword("shore", 1);
+        minimized.minimize();
+
+        TrieHolder<Integer> holder = new TrieHolder<Integer>(trie("she"));
+        holder.refresh(write(minimized)).get();
+        assertTrue(holder.get().isMinimized());
+        assertEquals(2, holder.parseText("by the SeaShore").size());
+    }
+
+    private static File write(Trie<Integer> trie) throws IOException {
+        File file = File.createTempFile("trie", ".ser");
+        file.deleteOnExit();
+        ObjectOutputStream output = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeObject(trie);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(text);
+    }
+
+    private Trie<Integer> trie(String keyword) {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword(keyword, 0);
+        return trie;
+    }
+
+    private Callable<Trie<Integer>> builder(final String keyword) {
+        return new Callable<Trie<Integer>>() {
+            @Override
+            public Trie<Integer> call() {
+                return trie(keyword);
+            }
+        };
+    }
+
+    /** holds back the first task, runs all others right away */
+    private static class DeferredExecutor implements Executor {
+
+        private Runnable deferred;
+
+        @Override
+        public void execute(Runnable command) {
+            if (this.deferred == null) {
+                this.deferred = command;
+            } else {
+                command.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+public class TrieProcessorTest {
+
+    @Test
+    public void emitsPublishedPerDocument() {
+        TrieProcessor<Integer> processor = new TrieProcessor<Integer>(trie());
+        new DocumentPublisher("ushers", "nothing", "his").subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(3, subscriber.results.get(0).size());
+        assertEquals(0, subscriber.results.get(1).size());
+        assertEquals(1, subscriber.results.get(2).size());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void documentsOnlyRequestedInBatches() {
+        TrieProcessor<Integer> processor = new TrieProcessor<Integer>(trie(),
+                4);
+        DocumentPublisher publisher = new DocumentPublisher("he", "he", "he",
+                "he", "he", "he", "he", "he", "he", "he");
+        publisher.subscribe(processor);
+        assertEquals(4, publisher.requested);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        assertEquals(0, subscriber.results.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.results.size());
+        assertEquals(4, publisher.requested);
+
+        subscriber.subscription.request(1);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(7, publisher.requested);
+
+        subscriber.subscription.request(100);
+        assertEquals(10, subscriber.results.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void cancelStopsUpstream() {
+        TrieProcessor<Integer> processor = new TrieProcessor<Integer>(trie());
+        DocumentPublisher publisher = new DocumentPublisher("he", "she");
+        publisher.subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.results.size());
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void invalidRequestSignalsError() {
+        TrieProcessor<Integer> processor = new TrieProcessor<Integer>(trie());
+        DocumentPublisher publisher = new DocumentPublisher("he");
+        publisher.subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void onlySingleSubscriber() {
+        TrieProcessor<Integer> processor = new TrieProcessor<Integer>(trie());
+        processor.subscribe(new CollectingSubscriber());
+        CollectingSubscriber second = new CollectingSubscriber();
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    private Trie<Integer> trie() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("hers", 0);
+        trie.addKeyword("his", 1);
+        trie.addKeyword("she", 2);
+        trie.addKeyword("he", 3);
+        return trie;
+    }
+
+    private static class DocumentPublisher implements Publisher<String> {
+
+        private final Iterator<String> documents;
+        private long requested;
+        private boolean cancelled;
+
+        DocumentPublisher(String... documents) {
+            this.documents = Arrays.asList(documents).iterator();
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private long demand;
+
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    demand += n;
+                    while (demand > 0 && !cancelled && documents.hasNext()) {
+                        demand--;
+                        subscriber.onNext(documents.next());
+                    }
+                    if (!cancelled && !documents.hasNext()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class CollectingSubscriber implements
+            Subscriber<Collection<Emit<Integer>>> {
+
+        private final List<Collection<Emit<Integer>>> results = new ArrayList<Collection<Emit<Integer>>>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Collection<Emit<Integer>> emits) {
+            this.results.add(emits);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+
+}
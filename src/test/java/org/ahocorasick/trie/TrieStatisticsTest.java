@@ -0,0 +1,66 @@
+package org.ahocorasick.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TrieStatisticsTest {
+
+    @Test
+    public void shapeOfAutomaton() {
+        Trie<String> trie = new Trie<String>();
+        trie.addKeyword("he", null);
+        trie.addKeyword("she", null);
+        trie.addKeyword("his", null);
+        trie.addKeyword("hers", null);
+        TrieStatistics statistics = trie.getStatistics();
+        assertEquals(4, statistics.getKeywordCount());
+        // root, h, he, her, hers, hi, his, s, sh, she
+        assertEquals(10, statistics.getStateCount());
+        assertEquals(9, statistics.getTransitionCount());
+        assertEquals(5, statistics.getDepthHistogram().length);
+        assertEquals(2, statistics.getDepthHistogram()[1]);
+        assertEquals(3, statistics.getFanOutHistogram()[0]);
+        assertEquals(2, statistics.getFanOutHistogram()[2]);
+        assertEquals(4, statistics.getOutputCount());
+        // she also emits he
+        assertEquals(5, statistics.getTotalOutputCount());
+        assertFalse(statistics.isCompiled());
+        assertEquals(0, statistics.getCompiledBytes());
+        assertEquals(0, statistics.getTransitionCacheBytes());
+        assertTrue(statistics.getStateBytes() > 0);
+        assertEquals(statistics.getStateBytes()
+                + statistics.getTransitionBytes()
+                + statistics.getOutputBytes() + statistics.getKeywordBytes(),
+                statistics.getEstimatedBytes());
+    }
+
+    @Test
+    public void compiledAndCachedForms() {
+        Trie<String> trie = new Trie<String>().cacheTransitions(16);
+        trie.addKeyword("abc", null);
+        trie.addKeyword("bcd", null);
+        trie.parseText("abcd");
+        assertTrue(trie.getStatistics().getTransitionCacheBytes() > 0);
+
+        assertTrue(trie.compile());
+        TrieStatistics statistics = trie.getStatistics();
+        assertTrue(statistics.isCompiled());
+        assertEquals(5, statistics.getCompiledWidth());
+        assertTrue(statistics.getCompiledBytes() > 4 * 7 * 5);
+    }
+
+    @Test
+    public void emptyTrie() {
+        TrieStatistics statistics = new Trie<String>().getStatistics();
+        assertEquals(1, statistics.getStateCount());
+        assertEquals(0, statistics.getTransitionCount());
+        assertEquals(0, statistics.getTotalOutputCount());
+        assertEquals(
+                "keywords=0, states=1, transitions=0, maximumDepth=0, maximumFanOut=0, outputs=0, totalOutputs=0, compiled=false, minimized=false, estimatedBytes="
+                        + statistics.getEstimatedBytes(), statistics.toString());
+    }
+
+}
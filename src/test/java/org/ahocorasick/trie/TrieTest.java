@@ -2,6 +2,7 @@ package org.ahocorasick.trie;
 
 import static junit.framework.Assert.assertEquals;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -208,6 +209,97 @@ public class TrieTest {
         trie.tokenize("Try a natural lip and subtle bronzer to keep all the focus on those big bright eyes with NARS Eyeshadow Duo in Rated R And the winner is... Boots No7 Advanced Renewal Anti-ageing Glycolic Peel Kit ($25 amazon.com) won most-appealing peel.");
     }
 
+    @Test
+    public void multipleDictionariesAllReported() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("apple", 0, 0);
+        trie.addKeyword("apple", 1, 1);
+        trie.addKeyword("pear", 2, 1);
+        Collection<Emit<Integer>> emits = trie.parseText("apple pear");
+        assertEquals(3, emits.size());
+        Iterator<Emit<Integer>> it = emits.iterator();
+        Emit<Integer> emit = it.next();
+        checkEmit(emit, 0, 4, "apple", 0);
+        assertEquals(0, emit.getDictionary());
+        emit = it.next();
+        checkEmit(emit, 0, 4, "apple", 1);
+        assertEquals(1, emit.getDictionary());
+        checkEmit(it.next(), 6, 9, "pear", 2);
+    }
+
+    @Test
+    public void selectedDictionariesOnly() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("apple", 0, 0);
+        trie.addKeyword("apple", 1, 1);
+        trie.addKeyword("pear", 2, 1);
+        trie.addKeyword("plum", 3, 2);
+        BitSet dictionaries = new BitSet();
+        dictionaries.set(0);
+        dictionaries.set(2);
+        Collection<Emit<Integer>> emits = trie.parseText("apple pear plum",
+                dictionaries);
+        assertEquals(2, emits.size());
+        Iterator<Emit<Integer>> it = emits.iterator();
+        checkEmit(it.next(), 0, 4, "apple", 0);
+        checkEmit(it.next(), 11, 14, "plum", 3);
+    }
+
+    @Test
+    public void overlapsResolvedWithinSelectedDictionaries() {
+        Trie<Integer> trie = new Trie<Integer>().removeOverlaps();
+        trie.addKeyword("hot", 0, 0);
+        trie.addKeyword("hot chocolate", 1, 1);
+        BitSet dictionaries = new BitSet();
+        dictionaries.set(0);
+        Collection<Emit<Integer>> emits = trie.parseText("hot chocolate",
+                dictionaries);
+        assertEquals(1, emits.size());
+        checkEmit(emits.iterator().next(), 0, 2, "hot", 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDictionary() {
+        new Trie<Integer>().addKeyword("abc", 0, -1);
+    }
+
+    @Test
+    public void sparseMatchesAfterSkippedText() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("\u65e5\u672c", 0);
+        trie.addKeyword("x", 1);
+        Collection<Emit<Integer>> emits = trie
+                .parseText("abc \uffff\u65e5 \u65e5\u672c def x");
+        assertEquals(2, emits.size());
+        Iterator<Emit<Integer>> it = emits.iterator();
+        checkEmit(it.next(), 7, 8, "\u65e5\u672c", 0);
+        checkEmit(it.next(), 14, 14, "x", 1);
+    }
+
+    @Test
+    public void noStartCharactersInText() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("xyz", 0);
+        assertEquals(0, trie.parseText("abcdefghijklmnopqrstuvw").size());
+    }
+
+    @Test
+    public void outputsInheritedThroughSeveralFailureStates() {
+        Trie<Integer> trie = new Trie<Integer>();
+        trie.addKeyword("abcd", 0);
+        trie.addKeyword("bcd", 1);
+        trie.addKeyword("d", 2);
+        trie.addKeyword("xcd", 3);
+        Collection<Emit<Integer>> emits = trie.parseText("abcd xcd");
+        assertEquals(5, emits.size());
+        Iterator<Emit<Integer>> it = emits.iterator();
+        checkEmit(it.next(), 0, 3, "abcd", 0);
+        checkEmit(it.next(), 1, 3, "bcd", 1);
+        checkEmit(it.next(), 3, 3, "d", 2);
+        checkEmit(it.next(), 5, 7, "xcd", 3);
+        checkEmit(it.next(), 7, 7, "d", 2);
+    }
+
     private void checkEmit(Emit<Integer> next, int expectedStart,
             int expectedEnd, String expectedKeyword, Integer expectedPayload) {
         assertEquals(expectedStart, next.getStart());